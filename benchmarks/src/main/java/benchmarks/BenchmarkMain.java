@@ -0,0 +1,38 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+// Запуск замеров: принимает обычные параметры JMH и всегда включает профилировщик
+// сборщика мусора, чтобы в результатах была скорость выделения памяти
+// (gc.alloc.rate.norm - байтов на операцию). Рост этого значения показывает
+// упаковку чисел или создание объектов на каждую точку
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        Runner runner = new Runner(withGcProfiler(commandLine));
+        if (commandLine.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+
+    private static Options withGcProfiler(CommandLineOptions commandLine) {
+        for (ProfilerConfig profiler : commandLine.getProfilers()) {
+            if (profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName())) {
+                return commandLine;
+            }
+        }
+        return new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build();
+    }
+}
@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JPanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Отрисовка GraphPanel в изображение без экрана и проверка цифр значения
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class GraphPanelBenchmark {
+
+    private static final int WIDTH = 1000;
+    private static final int HEIGHT = 800;
+
+    // Число значений, проверяемых за один вызов isAscendingDigits
+    private static final int DIGIT_VALUES = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int points;
+
+    private JPanel panel;
+    private BufferedImage image;
+    private Graphics2D canvas;
+    private double[] values;
+    private long appended;
+
+    @Setup(Level.Trial)
+    public void createPanel() {
+        panel = Plotting.newPanel();
+        panel.setSize(WIDTH, HEIGHT);
+        Plotting.addPoints(panel, TestData.xs(points), TestData.ys(points));
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        canvas = image.createGraphics();
+        canvas.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        // Построить слои до замеров
+        Plotting.paintPanel(panel, canvas);
+        // Значения с разным числом цифр: целые, с дробной частью, большие и малые
+        values = new double[DIGIT_VALUES];
+        for (int i = 0; i < DIGIT_VALUES; i++) {
+            values[i] = TestData.y(i * 7919L) * Math.pow(10, i % 7 - 2);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void disposeCanvas() {
+        canvas.dispose();
+    }
+
+    // Полная перерисовка: слои линий и маркеров строятся заново по всем точкам
+    @Benchmark
+    public BufferedImage paintComponent() {
+        Plotting.invalidatePanelLayers(panel);
+        Plotting.paintPanel(panel, canvas);
+        return image;
+    }
+
+    // Перерисовка окна без новых точек: вывод готовых слоёв
+    @Benchmark
+    public BufferedImage paintComponentCached() {
+        Plotting.paintPanel(panel, canvas);
+        return image;
+    }
+
+    // Поступление одной точки внутри границ: дорисовка отрезка и маркера на слои
+    @Benchmark
+    public void appendPoint() {
+        appended++;
+        Plotting.addPoint(panel, TestData.x(appended % points), TestData.y(appended % points));
+        Plotting.drawAppended(panel);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(DIGIT_VALUES)
+    public void isAscendingDigits(Blackhole blackhole) {
+        for (double value : values) {
+            blackhole.consume(Plotting.isAscendingDigits(value));
+        }
+    }
+}
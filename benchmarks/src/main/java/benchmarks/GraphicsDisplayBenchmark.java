@@ -0,0 +1,90 @@
+package benchmarks;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JPanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Отрисовка GraphicsDisplay в изображение без экрана
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djava.awt.headless=true"})
+public class GraphicsDisplayBenchmark {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 800;
+
+    @Param({"1000", "100000", "1000000"})
+    public int points;
+
+    // Многопоточная отрисовка по полосам (от 100 000 видимых точек - все точки без прореживания)
+    @Param({"false", "true"})
+    public boolean tiled;
+
+    private JPanel display;
+    private BufferedImage image;
+    private Graphics2D canvas;
+
+    @Setup(Level.Trial)
+    public void createDisplay() {
+        display = Plotting.newDisplay();
+        display.setSize(WIDTH, HEIGHT);
+        Plotting.showGraphics(display, Plotting.newSeries(TestData.xs(points), TestData.ys(points)));
+        Plotting.setShowNullMarkers(display, true);
+        Plotting.setTiledRendering(display, tiled);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        canvas = image.createGraphics();
+        canvas.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        // Первая отрисовка рассчитывает масштаб и видимую область
+        Plotting.paintDisplay(display, canvas);
+    }
+
+    @TearDown(Level.Trial)
+    public void disposeCanvas() {
+        canvas.dispose();
+    }
+
+    // Полная перерисовка всех слоёв (как после загрузки, масштабирования или сдвига)
+    @Benchmark
+    public BufferedImage paintComponent() {
+        Plotting.invalidateLayers(display);
+        Plotting.paintDisplay(display, canvas);
+        return image;
+    }
+
+    // Перерисовка окна без изменения графика: вывод готовых слоёв
+    @Benchmark
+    public BufferedImage paintComponentCached() {
+        Plotting.paintDisplay(display, canvas);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintMarkers() {
+        Plotting.paintMarkers(display, canvas);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage paintNullMarkers() {
+        Plotting.paintNullMarkers(display, canvas);
+        return image;
+    }
+}
@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Импорт текстового файла (TextPointFileImporter) в сравнении с построчным
+// чтением, разбиением строки и Double.parseDouble. Файл на 10M точек занимает
+// около 200 МБ
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class ImportBenchmark {
+
+    @Param({"100000", "1000000", "10000000"})
+    public int points;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = TestData.createCsvFile(points);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Benchmark
+    public Object importCsv() {
+        return Plotting.importCsv(file);
+    }
+
+    // Прежний способ: строки и подстроки на каждую точку
+    @Benchmark
+    public double[] readLines() throws IOException {
+        double[] ys = new double[points];
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            reader.readLine(); // Заголовок
+            String line;
+            for (int i = 0; (line = reader.readLine()) != null; i++) {
+                String[] fields = line.split(",");
+                Double.parseDouble(fields[0]);
+                ys[i] = Double.parseDouble(fields[1]);
+            }
+        }
+        return ys;
+    }
+}
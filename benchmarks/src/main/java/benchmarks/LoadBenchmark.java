@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JPanel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Открытие файла с графиком. MainFrame.openGraphics - это чтение файла
+// в фоновом потоке и передача ряда в GraphicsDisplay.showGraphics; окно для
+// этого не нужно, поэтому замеряется та же последовательность без окна.
+// Файл на 100M точек занимает 1,6 ГБ на диске и столько же в памяти
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx6g", "-Djava.awt.headless=true"})
+public class LoadBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000", "100000000"})
+    public int points;
+
+    private File file;
+    private JPanel display;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = TestData.createFile(points);
+        display = Plotting.newDisplay();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() {
+        file.delete();
+    }
+
+    // Только чтение файла в ряд
+    @Benchmark
+    public Object load() {
+        return Plotting.load(file);
+    }
+
+    // Чтение файла и подготовка ряда к показу (статистика, пирамида прореживания)
+    @Benchmark
+    public JPanel openGraphics() {
+        Plotting.showGraphics(display, Plotting.load(file));
+        return display;
+    }
+}
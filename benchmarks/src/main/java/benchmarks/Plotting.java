@@ -0,0 +1,253 @@
+package benchmarks;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.io.File;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import javax.swing.JPanel;
+
+// Доступ к классам приложения из замеров. Классы приложения лежат в пакете по
+// умолчанию, а его нельзя импортировать из именованного пакета (JMH требует
+// именованный), поэтому методы находятся через MethodHandles один раз при
+// загрузке класса. Вызов через константный MethodHandle JIT встраивает так же,
+// как прямой вызов, поэтому на результаты замеров он не влияет
+final class Plotting {
+
+    private static final MethodHandle NEW_SERIES;
+    private static final MethodHandle LOADER_LOAD;
+    private static final MethodHandle RESULT_GET_SERIES;
+    private static final MethodHandle NEW_IMPORTER;
+    private static final MethodHandle IMPORT_FILE;
+
+    private static final MethodHandle NEW_DISPLAY;
+    private static final MethodHandle SHOW_GRAPHICS;
+    private static final MethodHandle SET_SHOW_NULL_MARKERS;
+    private static final MethodHandle SET_TILED_RENDERING;
+    private static final MethodHandle DISPLAY_PAINT_COMPONENT;
+    private static final MethodHandle PAINT_MARKERS;
+    private static final MethodHandle PAINT_NULL_MARKERS;
+    private static final MethodHandle INVALIDATE_LAYERS;
+
+    private static final MethodHandle NEW_PANEL;
+    private static final MethodHandle ADD_POINTS;
+    private static final MethodHandle PANEL_PAINT_COMPONENT;
+    private static final MethodHandle ADD_POINT;
+    private static final MethodHandle DRAW_APPENDED;
+    private static final MethodHandle SET_PANEL_LAYERS_VALID;
+    private static final MethodHandle IS_ASCENDING_DIGITS;
+
+    static {
+        try {
+            Class<?> series = Class.forName("PointSeries");
+            Class<?> loader = Class.forName("GraphicsFileLoader");
+            Class<?> result = Class.forName("GraphicsFileLoader$Result");
+            Class<?> importer = Class.forName("TextPointFileImporter");
+            Class<?> display = Class.forName("GraphicsDisplay");
+            Class<?> panel = Class.forName("GraphPanel");
+            Class<?> digits = Class.forName("AscendingDigitsClassifier");
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandles.Lookup displayLookup = MethodHandles.privateLookupIn(display, lookup);
+            MethodHandles.Lookup panelLookup = MethodHandles.privateLookupIn(panel, lookup);
+            MethodType paint = MethodType.methodType(void.class, Graphics.class);
+
+            NEW_SERIES = lookup.findConstructor(series,
+                    MethodType.methodType(void.class, double[].class, double[].class, int.class));
+            LOADER_LOAD = lookup.findStatic(loader, "load", MethodType.methodType(result, File.class));
+            RESULT_GET_SERIES = lookup.findVirtual(result, "getSeries", MethodType.methodType(series));
+            NEW_IMPORTER = lookup.findConstructor(importer,
+                    MethodType.methodType(void.class, char.class, int.class, int.class));
+            IMPORT_FILE = lookup.findVirtual(importer, "importFile", MethodType.methodType(series, File.class));
+
+            NEW_DISPLAY = lookup.findConstructor(display, MethodType.methodType(void.class));
+            SHOW_GRAPHICS = lookup.findVirtual(display, "showGraphics",
+                    MethodType.methodType(void.class, series));
+            SET_SHOW_NULL_MARKERS = lookup.findVirtual(display, "setShowNullMarkers",
+                    MethodType.methodType(void.class, boolean.class));
+            SET_TILED_RENDERING = lookup.findVirtual(display, "setTiledRendering",
+                    MethodType.methodType(void.class, boolean.class));
+            DISPLAY_PAINT_COMPONENT = lookup.findVirtual(display, "paintComponent", paint);
+            PAINT_MARKERS = displayLookup.findVirtual(display, "paintMarkers",
+                    MethodType.methodType(void.class, Graphics2D.class));
+            PAINT_NULL_MARKERS = displayLookup.findVirtual(display, "paintNullMarkers",
+                    MethodType.methodType(void.class, Graphics2D.class));
+            INVALIDATE_LAYERS = displayLookup.findVirtual(display, "invalidateLayers",
+                    MethodType.methodType(void.class));
+
+            NEW_PANEL = lookup.findConstructor(panel, MethodType.methodType(void.class));
+            ADD_POINTS = lookup.findVirtual(panel, "addPoints",
+                    MethodType.methodType(void.class, double[].class, double[].class, int.class, int.class));
+            PANEL_PAINT_COMPONENT = panelLookup.findVirtual(panel, "paintComponent", paint);
+            ADD_POINT = lookup.findVirtual(panel, "addPoint",
+                    MethodType.methodType(void.class, double.class, double.class));
+            DRAW_APPENDED = panelLookup.findVirtual(panel, "drawAppended", MethodType.methodType(void.class));
+            SET_PANEL_LAYERS_VALID = panelLookup.findSetter(panel, "layersValid", boolean.class);
+            IS_ASCENDING_DIGITS = lookup.findStatic(digits, "isAscendingDigits",
+                    MethodType.methodType(boolean.class, double.class));
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private Plotting() {
+    }
+
+    // Ряд PointSeries поверх массивов координат
+    static Object newSeries(double[] xs, double[] ys) {
+        try {
+            return NEW_SERIES.invoke(xs, ys, xs.length);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    // Полная загрузка файла (GraphicsFileLoader.load); возвращает PointSeries
+    static Object load(File file) {
+        try {
+            return RESULT_GET_SERIES.invoke(LOADER_LOAD.invoke(file));
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    // Импорт текстового файла со столбцами X и Y через запятую; возвращает PointSeries
+    static Object importCsv(File file) {
+        try {
+            return IMPORT_FILE.invoke(NEW_IMPORTER.invoke(',', 0, 1), file);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static JPanel newDisplay() {
+        try {
+            return (JPanel) NEW_DISPLAY.invoke();
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void showGraphics(JPanel display, Object series) {
+        try {
+            SHOW_GRAPHICS.invoke(display, series);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void setShowNullMarkers(JPanel display, boolean showNullMarkers) {
+        try {
+            SET_SHOW_NULL_MARKERS.invoke(display, showNullMarkers);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void setTiledRendering(JPanel display, boolean tiledRendering) {
+        try {
+            SET_TILED_RENDERING.invoke(display, tiledRendering);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void paintDisplay(JPanel display, Graphics2D canvas) {
+        try {
+            DISPLAY_PAINT_COMPONENT.invoke(display, (Graphics) canvas);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void paintMarkers(JPanel display, Graphics2D canvas) {
+        try {
+            PAINT_MARKERS.invoke(display, canvas);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void paintNullMarkers(JPanel display, Graphics2D canvas) {
+        try {
+            PAINT_NULL_MARKERS.invoke(display, canvas);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    // Сбросить кэш слоёв GraphicsDisplay, чтобы следующий paintComponent перерисовал всё
+    static void invalidateLayers(JPanel display) {
+        try {
+            INVALIDATE_LAYERS.invoke(display);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static JPanel newPanel() {
+        try {
+            return (JPanel) NEW_PANEL.invoke();
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void addPoints(JPanel panel, double[] xs, double[] ys) {
+        try {
+            ADD_POINTS.invoke(panel, xs, ys, 0, xs.length);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void paintPanel(JPanel panel, Graphics2D canvas) {
+        try {
+            PANEL_PAINT_COMPONENT.invoke(panel, (Graphics) canvas);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    static void addPoint(JPanel panel, double x, double y) {
+        try {
+            ADD_POINT.invoke(panel, x, y);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    // Дорисовка поступивших точек на слои GraphPanel (то, что делает таймер перерисовки)
+    static void drawAppended(JPanel panel) {
+        try {
+            DRAW_APPENDED.invoke(panel);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    // Пометить слои GraphPanel устаревшими, чтобы следующая перерисовка построила их заново
+    static void invalidatePanelLayers(JPanel panel) {
+        try {
+            SET_PANEL_LAYERS_VALID.invoke(panel, false);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    // Проверка цифр значения, по которой GraphPanel выделяет точки
+    static boolean isAscendingDigits(double y) {
+        try {
+            return (boolean) IS_ASCENDING_DIGITS.invoke(y);
+        } catch (Throwable ex) {
+            throw rethrow(ex);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable ex) {
+        if (ex instanceof RuntimeException) return (RuntimeException) ex;
+        if (ex instanceof Error) throw (Error) ex;
+        return new IllegalStateException(ex);
+    }
+}
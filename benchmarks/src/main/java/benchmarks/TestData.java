@@ -0,0 +1,91 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// Синтетические ряды для замеров: X возрастает с шагом 1, Y - сумма двух
+// синусоид, многократно пересекающая ось X, так что в замерах участвуют и
+// маркеры обоих классов, и маркеры пересечений с нулём
+final class TestData {
+
+    // Число точек, записываемых в файл за одну операцию
+    private static final int WRITE_POINTS = 1 << 16;
+
+    private TestData() {
+    }
+
+    static double x(long i) {
+        return i;
+    }
+
+    static double y(long i) {
+        return 10 * Math.sin(i * 0.001) + 3 * Math.sin(i * 0.037);
+    }
+
+    static double[] xs(int points) {
+        double[] xs = new double[points];
+        for (int i = 0; i < points; i++) {
+            xs[i] = x(i);
+        }
+        return xs;
+    }
+
+    static double[] ys(int points) {
+        double[] ys = new double[points];
+        for (int i = 0; i < points; i++) {
+            ys[i] = y(i);
+        }
+        return ys;
+    }
+
+    // Временный файл с графиком в формате приложения (пары double big-endian)
+    static File createFile(long points) throws IOException {
+        File file = File.createTempFile("graphics-" + points + "-", ".bin");
+        file.deleteOnExit();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_POINTS * 2 * Double.BYTES)
+                .order(ByteOrder.BIG_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            for (long i = 0; i < points; ) {
+                buffer.clear();
+                long end = Math.min(points, i + WRITE_POINTS);
+                for (; i < end; i++) {
+                    buffer.putDouble(x(i));
+                    buffer.putDouble(y(i));
+                }
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+        return file;
+    }
+
+    // Временный текстовый файл с графиком: заголовок и строки "x,y"
+    static File createCsvFile(long points) throws IOException {
+        File file = File.createTempFile("graphics-" + points + "-", ".csv");
+        file.deleteOnExit();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.US_ASCII), 1 << 16)) {
+            writer.write("x,y\n");
+            for (long i = 0; i < points; i++) {
+                writer.write(Double.toString(x(i)));
+                writer.write(',');
+                // Шесть знаков после запятой, как в типичных выгрузках
+                writer.write(String.format(Locale.ROOT, "%.6f", y(i)));
+                writer.write('\n');
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,98 @@
+import java.awt.Color;
+
+// Выделение точек, у которых цифры в записи Y (как её даёт Double.toString,
+// без знака, точки и показателя степени) строго возрастают: такие точки
+// красные, остальные - синие
+public class AscendingDigitsClassifier implements PointClassifier {
+
+    public static final byte ASCENDING = 0;
+    public static final byte OTHER = 1;
+
+    // Double.toString записывает числа из [1e-3, 1e7) без показателя степени
+    private static final double MIN_PLAIN = 1e-3;
+    private static final double MAX_PLAIN = 1e7;
+
+    // Строго возрастающих цифр не больше десяти, поэтому запись с более чем девятью
+    // цифрами после точки (плюс хотя бы одна до неё) заведомо не подходит
+    private static final int MAX_FRACTION_DIGITS = 9;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9
+    };
+
+    public int getClassCount() {
+        return 2;
+    }
+
+    public byte classify(double x, double y) {
+        return isAscendingDigits(y) ? ASCENDING : OTHER;
+    }
+
+    public Color getColor(byte pointClass) {
+        return pointClass == ASCENDING ? Color.RED : Color.BLUE;
+    }
+
+    // Строго ли возрастают цифры записи числа. Цифры кратчайшей десятичной записи
+    // извлекаются арифметически; только числа, которые Double.toString записывает
+    // с показателем степени, проверяются по строке
+    public static boolean isAscendingDigits(double y) {
+        // В записях NaN и Infinity нет цифр
+        if (Double.isNaN(y) || Double.isInfinite(y)) return true;
+        double value = Math.abs(y);
+        // "0.0" - две одинаковые цифры
+        if (value == 0) return false;
+        if (value < MIN_PLAIN || value >= MAX_PLAIN) {
+            return isAscendingDigits(Double.toString(value));
+        }
+        // Кратчайшая запись value = mantissa / 10^fractionDigits
+        for (int fractionDigits = 0; fractionDigits <= MAX_FRACTION_DIGITS; fractionDigits++) {
+            double power = POWERS_OF_TEN[fractionDigits];
+            double mantissa = Math.rint(value * power);
+            if (mantissa / power != value) continue;
+            long digits = (long) mantissa;
+            if (fractionDigits == 0) {
+                // Целое число записывается с ".0" - последняя цифра 0 не больше предыдущей
+                return false;
+            }
+            if (value < 1) {
+                // "0.xxx": ведущий 0 меньше первой значащей цифры, но нули сразу после
+                // точки повторяют его
+                return countDigits(digits) == fractionDigits && isAscending(digits);
+            }
+            return isAscending(digits);
+        }
+        return false;
+    }
+
+    // Строго ли возрастают цифры положительного числа (от старшей к младшей)
+    private static boolean isAscending(long number) {
+        long previous = 10;
+        while (number > 0) {
+            long digit = number % 10;
+            if (digit >= previous) return false;
+            previous = digit;
+            number /= 10;
+        }
+        return true;
+    }
+
+    private static int countDigits(long number) {
+        int count = 0;
+        while (number > 0) {
+            count++;
+            number /= 10;
+        }
+        return count;
+    }
+
+    private static boolean isAscendingDigits(String text) {
+        char previous = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') continue;
+            if (previous != 0 && c <= previous) return false;
+            previous = c;
+        }
+        return true;
+    }
+}
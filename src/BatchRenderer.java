@@ -0,0 +1,158 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+// Пакетная отрисовка без окна: каждый файл с графиком из входного каталога
+// рисуется тем же GraphicsDisplay (оси, линия, маркеры точек и нулей, тот же
+// масштаб), что и в окне приложения, и сохраняется в PNG заданного размера.
+// Файлы обрабатываются параллельно пулом потоков по числу ядер
+public class BatchRenderer {
+
+    // Размеры изображения по умолчанию
+    public static final int DEFAULT_WIDTH = 1280;
+    public static final int DEFAULT_HEIGHT = 800;
+
+    // Отображатель и изображение каждого рабочего потока используются для всех
+    // его файлов, поэтому слои и маркеры не создаются заново для каждого файла
+    private final ThreadLocal<GraphicsDisplay> displays;
+    private final ThreadLocal<BufferedImage> images;
+
+    // Рисуемый диапазон X (по умолчанию - весь график)
+    private double fromX = Double.NEGATIVE_INFINITY;
+    private double toX = Double.POSITIVE_INFINITY;
+
+    public BatchRenderer(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Недопустимый размер изображения: " + width + "x" + height);
+        }
+        displays = ThreadLocal.withInitial(() -> {
+            GraphicsDisplay display = new GraphicsDisplay();
+            display.setSize(width, height);
+            display.setShowNullMarkers(true);
+            return display;
+        });
+        images = ThreadLocal.withInitial(() -> new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+    }
+
+    // Рисовать только точки с X из [fromX, toX]; из индексированных файлов
+    // читаются только порции этого диапазона
+    public void setRange(double fromX, double toX) {
+        this.fromX = fromX;
+        this.toX = toX;
+    }
+
+    // Нарисовать график из файла input и сохранить его в PNG output
+    public void render(File input, File output) throws IOException {
+        boolean wholeFile = fromX == Double.NEGATIVE_INFINITY && toX == Double.POSITIVE_INFINITY;
+        GraphicsFileLoader.Result result = wholeFile ? GraphicsFileLoader.load(input)
+                : GraphicsFileLoader.load(input, fromX, toX);
+        if (result.getTruncatedBytes() > 0) {
+            System.err.println(input + ": файл обрывается на неполной записи, последние "
+                    + result.getTruncatedBytes() + " байт пропущены");
+        }
+        GraphicsDisplay display = displays.get();
+        BufferedImage image = images.get();
+        display.showGraphics(result.getSeries());
+        Graphics2D canvas = image.createGraphics();
+        try {
+            display.paintComponent(canvas);
+        } finally {
+            canvas.dispose();
+            // Не удерживать точки файла до следующего файла этого потока
+            display.showGraphics(new PointSeries(0));
+        }
+        if (!ImageIO.write(image, "png", output)) {
+            throw new IOException("Формат PNG не поддерживается");
+        }
+    }
+
+    // Нарисовать все файлы каталога inputDirectory в outputDirectory (имя изображения -
+    // имя файла с расширением .png). Возвращает число файлов, которые не удалось нарисовать
+    public int renderDirectory(File inputDirectory, File outputDirectory) throws IOException, InterruptedException {
+        File[] files = inputDirectory.listFiles(File::isFile);
+        if (files == null) {
+            throw new IOException("Не удалось прочитать каталог " + inputDirectory);
+        }
+        Arrays.sort(files);
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Не удалось создать каталог " + outputDirectory);
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "batch-renderer-" + threadNumber.incrementAndGet()));
+        AtomicInteger done = new AtomicInteger();
+        int failed = 0;
+        try {
+            List<Future<?>> tasks = new ArrayList<>(files.length);
+            for (File file : files) {
+                File output = new File(outputDirectory, imageName(file));
+                tasks.add(executor.submit(() -> {
+                    render(file, output);
+                    int count = done.incrementAndGet();
+                    System.out.println(count + "/" + files.length + " " + output);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < files.length; i++) {
+                try {
+                    tasks.get(i).get();
+                } catch (ExecutionException ex) {
+                    failed++;
+                    System.err.println(files[i] + ": " + ex.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return failed;
+    }
+
+    private static String imageName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + ".png";
+    }
+
+    // Запуск: BatchRenderer <входной каталог> <выходной каталог> [ширина высота] [--range fromX toX]
+    public static void main(String[] args) throws Exception {
+        // Окна не создаются, поэтому дисплей не нужен
+        System.setProperty("java.awt.headless", "true");
+        List<String> positional = new ArrayList<>();
+        double fromX = Double.NEGATIVE_INFINITY;
+        double toX = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--range") && i + 2 < args.length) {
+                fromX = Double.parseDouble(args[++i]);
+                toX = Double.parseDouble(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 2 && positional.size() != 4) {
+            System.err.println("Использование: BatchRenderer <входной каталог> <выходной каталог>"
+                    + " [ширина высота] [--range fromX toX]");
+            System.exit(2);
+        }
+        int width = positional.size() == 4 ? Integer.parseInt(positional.get(2)) : DEFAULT_WIDTH;
+        int height = positional.size() == 4 ? Integer.parseInt(positional.get(3)) : DEFAULT_HEIGHT;
+        long start = System.nanoTime();
+        BatchRenderer renderer = new BatchRenderer(width, height);
+        renderer.setRange(fromX, toX);
+        int failed = renderer.renderDirectory(new File(positional.get(0)), new File(positional.get(1)));
+        System.out.println("Готово за " + (System.nanoTime() - start) / 1_000_000 + " мс"
+                + (failed > 0 ? ", с ошибками: " + failed : ""));
+        System.exit(failed > 0 ? 1 : 0);
+    }
+}
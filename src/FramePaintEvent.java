@@ -0,0 +1,23 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Событие JFR: кадр GraphicsDisplay целиком (устаревшие слои перерисовываются, остальные
+// берутся из кэша)
+@Name("graphics.FramePaint")
+@Label("Graphics Frame Paint")
+@Category("Graphics")
+@Description("Отрисовка кадра графика")
+public class FramePaintEvent extends Event {
+
+    @Label("Layers Repainted")
+    int layersRepainted;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+}
@@ -1,40 +1,155 @@
 import javax.swing.*;
 import java.awt.*;
-import java.awt.geom.Ellipse2D;
-import java.util.ArrayList;
-import java.util.List;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class GraphPanel extends JPanel {
 
-    private List<Point> points; // Список точек для графика
+    // Частота перерисовки при поступлении новых точек (кадров в секунду)
+    private static final int FRAME_RATE = 60;
+
+    // Буфер поступающих точек; доступ к нему - только под его монитором,
+    // так как точки могут добавляться из любых потоков
+    private final LivePointBuffer buffer = new LivePointBuffer();
+    private PointSeries points; // Снимок точек для полной перерисовки слоёв
+    private byte[] pointClasses = new byte[0]; // Снимок классов точек для полной перерисовки
+    private PointClassifier classifier; // Правило выделения точек для рисования
+    // Границы отображаемой области. Они охватывают все точки, но могут быть шире:
+    // вышедшая за них точка расширяет область сразу вдвое, чтобы следующие точки
+    // ещё долго дорисовывались без полной перерисовки
     private double maxX; // Максимальное значение по X
     private double minX; // Минимальное значение по X
     private double maxY; // Максимальное значение по Y
     private double minY; // Минимальное значение по Y
     private boolean showGrid = false; // Флаг отображения сетки
+    private final MarkerRenderer markerRenderer = new MarkerRenderer(); // Штампование маркеров
+    private final BasicStroke graphStroke = new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER,
+            10.0f, new float[] {10, 5}, 0); // Пунктирная линия: длина штриха и пробела
+
+    // Насколько маркер и линия выступают от своих точек (в пикселях)
+    private static final int MARKER_EXTENT = 8;
+    private static final int LINE_EXTENT = 2;
+
+    // Слои с уже нарисованными линиями и маркерами (маркеры лежат поверх всех линий,
+    // поэтому новые отрезки не могут рисоваться в один слой с ними). Поступившие точки
+    // дорисовываются на слои, и перерисовывается только прямоугольник вокруг них
+    private BufferedImage lineLayer;
+    private BufferedImage markerLayer;
+    private double layerScaleX; // Масштаб устройства, для которого построены слои
+    private double layerScaleY;
+    private RenderingHints layerHints; // Параметры рисования холста панели
+    private boolean layersValid = false; // Соответствуют ли слои точкам и границам
+    private boolean boundsFitted = false; // Заданы ли уже границы области
+    // Порядковый номер (LivePointBuffer.getFirstSequence) самой старой точки и число точек,
+    // уже нарисованных на слоях
+    private long drawnFirstSequence;
+    private int drawnCount;
+    // Изменились ли точки так, что слои нужно нарисовать заново (под монитором буфера)
+    private boolean redrawRequested = true;
+
+    private static final double PICK_RADIUS = 10; // Радиус поиска точки под курсором (в пикселях)
+    private PointPicker picker; // Поиск точки под курсором по снимку точек
+    private long pinnedSequence = -1; // Порядковый номер точки, закреплённой щелчком (-1 - нет)
+
+    // Запрошена ли перерисовка после поступления точек и таймер, выполняющий её
+    // не чаще одного раза за кадр
+    private final AtomicBoolean repaintPending = new AtomicBoolean();
+    private final Timer repaintTimer;
 
 
     public GraphPanel() {
-        points = new ArrayList<>(); // Инициализация списка точек
+        points = new PointSeries(); // Инициализация ряда точек
         setBackground(Color.WHITE); // Установка белого фона
+        buffer.setClassifier(new AscendingDigitsClassifier()); // Точки с возрастающими цифрами - красные
+        repaintTimer = new Timer(1000 / FRAME_RATE, e -> {
+            repaintPending.set(false);
+            drawAppended();
+        });
+        repaintTimer.setRepeats(false);
+
+        // Подсказка со значением точки под курсором; щелчок рядом с точкой закрепляет
+        // её значение на графике, щелчок мимо точек - снимает
+        ToolTipManager.sharedInstance().registerComponent(this);
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int i = pickPoint(e.getX(), e.getY());
+                pinnedSequence = i >= 0 ? drawnFirstSequence + i : -1;
+                repaint();
+            }
+        });
     }
 
-    // Метод для добавления точки на график
+    // Метод для добавления точки на график (можно вызывать из любого потока)
     public void addPoint(double x, double y) {
-        points.add(new Point(x, y));
-        // Обновление минимальных/максимальных значений
-        if (points.size() == 1) {
-            maxX = x;
-            minX = x;
-            maxY = y;
-            minY = y;
-        } else {
-            maxX = Math.max(maxX, x);
-            minX = Math.min(minX, x);
-            maxY = Math.max(maxY, y);
-            minY = Math.min(minY, y);
+        synchronized (buffer) {
+            buffer.add(x, y);
+        }
+        scheduleRepaint();
+    }
+
+    // Метод для добавления len точек из массивов начиная с позиции off (можно вызывать
+    // из любого потока). Все точки пачки попадают на график в одном кадре
+    public void addPoints(double[] xs, double[] ys, int off, int len) {
+        synchronized (buffer) {
+            buffer.addAll(xs, ys, off, len);
+        }
+        scheduleRepaint();
+    }
+
+    // Метод для добавления сразу всех точек ряда
+    public void addPoints(PointSeries series) {
+        synchronized (buffer) {
+            for (int i = 0; i < series.size(); i++) {
+                buffer.add(series.getX(i), series.getY(i));
+            }
+        }
+        scheduleRepaint();
+    }
+
+    // Хранить только последние retention точек (0 - хранить все точки)
+    public void setRetention(int retention) {
+        synchronized (buffer) {
+            buffer.setRetention(retention);
+            redrawRequested = true;
+        }
+        scheduleRepaint();
+    }
+
+    public int getRetention() {
+        synchronized (buffer) {
+            return buffer.getRetention();
+        }
+    }
+
+    // Правило выделения точек (класс точки вычисляется один раз при её добавлении)
+    public void setClassifier(PointClassifier classifier) {
+        if (classifier == null) {
+            throw new IllegalArgumentException("Не задано правило выделения точек");
+        }
+        synchronized (buffer) {
+            buffer.setClassifier(classifier);
+            redrawRequested = true;
+        }
+        scheduleRepaint();
+    }
+
+    public PointClassifier getClassifier() {
+        synchronized (buffer) {
+            return buffer.getClassifier();
+        }
+    }
+
+    // Перерисовки после добавления точек объединяются: пока запрошенная
+    // перерисовка не выполнена, новые запросы не ставятся в очередь
+    private void scheduleRepaint() {
+        if (repaintPending.compareAndSet(false, true)) {
+            repaintTimer.restart();
         }
-        repaint(); // Перерисовка панели
     }
 
 
@@ -50,13 +165,238 @@ public class GraphPanel extends JPanel {
         super.paintComponent(g);
         Graphics2D g2d = (Graphics2D) g; // Приведение к Graphics2D для более широких возможностей
 
+        // Слои строятся заново только после изменения размеров, границ или вытеснения точек;
+        // иначе они уже содержат все точки, и выводится лишь требуемая часть панели
+        AffineTransform device = g2d.getTransform();
+        if (!layersValid || lineLayer == null || layerScaleX != device.getScaleX()
+                || layerScaleY != device.getScaleY()
+                || lineLayer.getWidth() != (int) Math.ceil(getWidth() * device.getScaleX())
+                || lineLayer.getHeight() != (int) Math.ceil(getHeight() * device.getScaleY())) {
+            redrawLayers(g2d);
+        }
+
         if (showGrid) {
             drawGrid(g2d); // Рисование сетки, если флаг установлен
         }
 
         if (!points.isEmpty()) {
-            drawGraph(g2d); // Рисование графика, если есть точки
+            g2d.drawImage(lineLayer, 0, 0, getWidth(), getHeight(), null);
+            g2d.drawImage(markerLayer, 0, 0, getWidth(), getHeight(), null);
+        }
+
+        if (pinnedSequence >= 0) {
+            drawPinnedPoint(g2d); // Закреплённая точка поверх графика
+        }
+    }
+
+    // Номер точки снимка рядом с точкой панели (screenX, screenY) или -1
+    private int pickPoint(int screenX, int screenY) {
+        if (points.isEmpty() || !(maxX > minX && maxY > minY)) return -1;
+        if (picker == null) {
+            picker = new PointPicker(points, false); // Точки поступают в произвольном порядке
         }
+        double scaleX = getWidth() / (maxX - minX); // Пикселей в единице по X
+        double scaleY = getHeight() / (maxY - minY); // Пикселей в единице по Y
+        return picker.nearest(minX + screenX / scaleX, minY + (getHeight() - screenY) / scaleY,
+                scaleX, scaleY, PICK_RADIUS);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        int i = pickPoint(event.getX(), event.getY());
+        return i >= 0 ? describePoint(i) : null;
+    }
+
+    // Подпись точки снимка: номер среди всех поступивших точек и координаты
+    private String describePoint(int i) {
+        return String.format("точка %,d: x = %s, y = %s", drawnFirstSequence + i, points.getX(i), points.getY(i));
+    }
+
+    // Метод для рисования закреплённой точки: кольцо вокруг неё и подпись со значением
+    private void drawPinnedPoint(Graphics2D g2d) {
+        long i = pinnedSequence - drawnFirstSequence;
+        if (i < 0 || i >= points.size()) {
+            pinnedSequence = -1; // Точка вытеснена из буфера
+            return;
+        }
+        int x = scaleX(points.getX((int) i));
+        int y = scaleY(points.getY((int) i));
+        g2d.setColor(Color.DARK_GRAY);
+        g2d.setStroke(new BasicStroke(2));
+        g2d.drawOval(x - 9, y - 9, 18, 18);
+
+        String text = describePoint((int) i);
+        FontMetrics metrics = g2d.getFontMetrics();
+        int width = metrics.stringWidth(text) + 8;
+        int height = metrics.getHeight() + 4;
+        int left = Math.min(x + 12, getWidth() - width - 2); // Справа сверху от точки, но в пределах панели
+        int top = Math.max(y - 12 - height, 2);
+        g2d.setColor(new Color(255, 255, 255, 220));
+        g2d.fillRect(left, top, width, height);
+        g2d.setColor(Color.DARK_GRAY);
+        g2d.drawRect(left, top, width, height);
+        g2d.drawString(text, left + 4, top + 2 + metrics.getAscent());
+    }
+
+    // Полная перерисовка слоёв по снимку всех точек буфера
+    private void redrawLayers(Graphics2D g2d) {
+        AffineTransform device = g2d.getTransform();
+        layerScaleX = device.getScaleX();
+        layerScaleY = device.getScaleY();
+        layerHints = g2d.getRenderingHints();
+        int imageWidth = Math.max(1, (int) Math.ceil(getWidth() * layerScaleX));
+        int imageHeight = Math.max(1, (int) Math.ceil(getHeight() * layerScaleY));
+        if (lineLayer == null || lineLayer.getWidth() != imageWidth || lineLayer.getHeight() != imageHeight) {
+            lineLayer = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            markerLayer = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+
+        // Снимок точек и границ берётся под монитором буфера, рисование идёт уже без него
+        synchronized (buffer) {
+            buffer.copyTo(points);
+            pointClasses = buffer.copyClassesTo(pointClasses);
+            classifier = buffer.getClassifier();
+            if (!buffer.isEmpty()) {
+                fitBounds(buffer.getMinX(), buffer.getMaxX(), buffer.getMinY(), buffer.getMaxY());
+            }
+            drawnFirstSequence = buffer.getFirstSequence();
+            drawnCount = buffer.size();
+            redrawRequested = false;
+        }
+        picker = null; // Номера точек в новом снимке сдвинулись
+
+        Graphics2D lines = createLayerGraphics(lineLayer);
+        Graphics2D markers = createLayerGraphics(markerLayer);
+        lines.setComposite(AlphaComposite.Clear);
+        lines.fillRect(0, 0, getWidth(), getHeight());
+        markers.setComposite(AlphaComposite.Clear);
+        markers.fillRect(0, 0, getWidth(), getHeight());
+        lines.setComposite(AlphaComposite.SrcOver);
+        markers.setComposite(AlphaComposite.SrcOver);
+        if (!points.isEmpty()) {
+            drawGraph(lines, markers);
+        }
+        lines.dispose();
+        markers.dispose();
+        layersValid = true;
+    }
+
+    // Холст слоя в координатах панели
+    private Graphics2D createLayerGraphics(BufferedImage layer) {
+        Graphics2D canvas = layer.createGraphics();
+        canvas.setRenderingHints(layerHints);
+        canvas.scale(layerScaleX, layerScaleY);
+        return canvas;
+    }
+
+    // Дорисовать поступившие точки на слои (вызывается таймером перерисовки). Если точки
+    // вышли за границы области, были вытеснены или сменилось правило выделения, слои
+    // строятся заново при перерисовке всей панели
+    private void drawAppended() {
+        if (!layersValid) {
+            repaint();
+            return;
+        }
+        int from;
+        int first;
+        int count;
+        PointSeries appended;
+        byte[] appendedClasses;
+        synchronized (buffer) {
+            if (redrawRequested || buffer.getFirstSequence() != drawnFirstSequence
+                    || buffer.getMinX() < minX || buffer.getMaxX() > maxX
+                    || buffer.getMinY() < minY || buffer.getMaxY() > maxY) {
+                layersValid = false;
+                repaint();
+                return;
+            }
+            // Новые точки и последняя уже нарисованная, от которой начинается первый новый отрезок
+            if (buffer.size() == drawnCount) return;
+            from = Math.max(0, drawnCount - 1);
+            first = drawnCount - from;
+            count = buffer.size() - from;
+            appended = new PointSeries(count);
+            appendedClasses = new byte[count];
+            for (int i = 0; i < count; i++) {
+                appended.add(buffer.getX(from + i), buffer.getY(from + i));
+                appendedClasses[i] = buffer.getPointClass(from + i);
+            }
+            drawnCount = buffer.size();
+        }
+        // Снимок для полной перерисовки дополняется новыми точками
+        for (int i = first; i < count; i++) {
+            points.add(appended.getX(i), appended.getY(i));
+        }
+        if (pointClasses.length < points.size()) {
+            pointClasses = Arrays.copyOf(pointClasses, Math.max(points.size(), pointClasses.length * 2));
+        }
+        System.arraycopy(appendedClasses, first, pointClasses, from + first, count - first);
+
+        Graphics2D lines = createLayerGraphics(lineLayer);
+        Graphics2D markers = createLayerGraphics(markerLayer);
+        lines.setColor(Color.BLUE);
+        lines.setStroke(graphStroke);
+        BufferedImage[] sprites = markerRenderer.getSprites(MarkerRenderer.MarkerShape.CIRCLE, classifier);
+        Rectangle dirty = null;
+        for (int i = first; i < count; i++) {
+            int x = scaleX(appended.getX(i));
+            int y = scaleY(appended.getY(i));
+            Rectangle area = new Rectangle(x - MARKER_EXTENT, y - MARKER_EXTENT,
+                    2 * MARKER_EXTENT + 1, 2 * MARKER_EXTENT + 1);
+            if (i > 0) {
+                int previousX = scaleX(appended.getX(i - 1));
+                int previousY = scaleY(appended.getY(i - 1));
+                lines.drawLine(previousX, previousY, x, y);
+                area.add(new Rectangle(previousX - LINE_EXTENT, previousY - LINE_EXTENT,
+                        2 * LINE_EXTENT + 1, 2 * LINE_EXTENT + 1));
+            }
+            markerRenderer.stamp(markers, sprites[appendedClasses[i]], x, y);
+            dirty = dirty == null ? area : dirty.union(area);
+        }
+        lines.dispose();
+        markers.dispose();
+        if (dirty != null) {
+            repaint(dirty);
+        }
+    }
+
+    // Подогнать границы области под точки в [dataMinX, dataMaxX] x [dataMinY, dataMaxY]
+    private void fitBounds(double dataMinX, double dataMaxX, double dataMinY, double dataMaxY) {
+        if (!boundsFitted) {
+            // Первое построение - область точно по точкам
+            minX = dataMinX;
+            maxX = dataMaxX;
+            minY = dataMinY;
+            maxY = dataMaxY;
+            boundsFitted = true;
+            return;
+        }
+        double[] x = fitRange(minX, maxX, dataMinX, dataMaxX);
+        double[] y = fitRange(minY, maxY, dataMinY, dataMaxY);
+        minX = x[0];
+        maxX = x[1];
+        minY = y[0];
+        maxY = y[1];
+    }
+
+    // Диапазон области для точек из [dataMin, dataMax]: прежний диапазон [min, max],
+    // расширенный вдвое в сторону вышедших за него точек (или до самих точек, если
+    // они ушли дальше). Если точки занимают меньше половины диапазона (старые точки
+    // вытеснены), диапазон подгоняется точно по точкам
+    private static double[] fitRange(double min, double max, double dataMin, double dataMax) {
+        double span = max - min;
+        double newMin = min;
+        double newMax = max;
+        if (dataMax > max) {
+            newMax = Math.max(dataMax, min + 2 * span);
+        }
+        if (dataMin < min) {
+            newMin = Math.min(dataMin, max - 2 * span);
+        }
+        if (2 * (dataMax - dataMin) < newMax - newMin) {
+            return new double[] {dataMin, dataMax};
+        }
+        return new double[] {newMin, newMax};
     }
 
     // Метод для рисования сетки
@@ -64,6 +404,8 @@ public class GraphPanel extends JPanel {
         g2d.setColor(Color.LIGHT_GRAY); // Цвет сетки - светло-серый
         double gridX = (maxX - minX) / 10; // Шаг сетки по X
         double gridY = (maxY - minY) / 10; // Шаг сетки по Y
+        // Пока область вырождена (например, в ней одна точка), сетку построить нельзя
+        if (!(gridX > 0 && gridY > 0)) return;
 
         // Вертикальные линии сетки
         for (double x = minX; x <= maxX + gridX / 2; x += gridX) {  // Добавлено gridX/2 для отображения последней линии
@@ -78,30 +420,29 @@ public class GraphPanel extends JPanel {
     }
 
 
-    // Метод для рисования графика
-    private void drawGraph(Graphics2D g2d) {
-        float[] dashPattern = {10, 5}; // Длина штриха и пробела
-        g2d.setColor(Color.BLUE); // Цвет графика - синий
-        g2d.setStroke(new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10.0f, dashPattern, 0)); // Пунктирная линия
+    // Метод для рисования графика: линии - на слой lines, маркеры - на слой markers
+    private void drawGraph(Graphics2D lines, Graphics2D markers) {
+        lines.setColor(Color.BLUE); // Цвет графика - синий
+        lines.setStroke(graphStroke); // Пунктирная линия
 
         // Рисование линий между точками
         for (int i = 0; i < points.size() - 1; i++) {
-            Point p1 = points.get(i);
-            Point p2 = points.get(i + 1);
-            g2d.drawLine(scaleX(p1.x), scaleY(p1.y), scaleX(p2.x), scaleY(p2.y));
+            lines.drawLine(scaleX(points.getX(i)), scaleY(points.getY(i)),
+                    scaleX(points.getX(i + 1)), scaleY(points.getY(i + 1)));
         }
 
-        // Рисование маркеров (круги 11x11)
-        for (Point p : points) {
-            if (isAscendingDigits(p.y)) {
-                g2d.setColor(Color.RED); // Выделение точек с возрастающими цифрами красным
-            } else {
-                g2d.setColor(Color.BLUE); // Цвет маркера - синий
-            }
-
-            int x = scaleX(p.x) - 5; // Координата X маркера
-            int y = scaleY(p.y) - 5; // Координата Y маркера
-            g2d.fill(new Ellipse2D.Double(x, y, 11, 11)); // Рисование маркера как круга
+        // Рисование маркеров (круги 11x11). Маркеры отбираются от последней точки к первой:
+        // из маркеров с центром в одном пикселе виден только последний нарисованный
+        markerRenderer.begin(getWidth(), getHeight());
+        for (int i = points.size() - 1; i >= 0; i--) {
+            markerRenderer.claim(i, scaleX(points.getX(i)), scaleY(points.getY(i)));
+        }
+        BufferedImage[] sprites = markerRenderer.getSprites(MarkerRenderer.MarkerShape.CIRCLE, classifier);
+        for (int k = markerRenderer.getSelectedCount() - 1; k >= 0; k--) {
+            int i = markerRenderer.getSelected(k);
+            // Цвет маркера - по классу точки, найденному при её добавлении
+            markerRenderer.stamp(markers, sprites[pointClasses[i]],
+                    scaleX(points.getX(i)), scaleY(points.getY(i)));
         }
     }
 
@@ -117,33 +458,6 @@ public class GraphPanel extends JPanel {
     }
 
 
-    // Проверка на возрастание цифр в числе
-    private boolean isAscendingDigits(double y) {
-        String yStr = String.valueOf(y).replaceAll("[^0-9]", "");  // Удаление нецифровых символов
-        if (yStr.length() < 2) return true; // Одна цифра или пустая строка - всегда возрастает
-        for (int i = 0; i < yStr.length() - 1; i++) {
-            if (yStr.charAt(i) >= yStr.charAt(i + 1)) {
-                return false; // Не возрастает
-            }
-        }
-        return true; // Возрастает
-    }
-
-
-    // Внутренний класс для представления точки
-    private static class Point {
-        double x;
-        double y;
-
-        // Конструктор класса Point
-        Point(double x, double y) {
-            this.x = x;
-            this.y = y;
-        }
-    }
-
-
-
     public static void main(String[] args) {
         JFrame frame = new JFrame("График"); // Создание окна
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Закрытие окна при нажатии на крестик
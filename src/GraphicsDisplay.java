@@ -1,27 +1,44 @@
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Cursor;
 import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.Paint;
-import java.awt.Stroke;
+import java.awt.GraphicsConfiguration;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Transparency;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
-import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import javax.swing.*;
 
-import static java.lang.Math.abs;
-
 @SuppressWarnings("serial")
 public class GraphicsDisplay extends JPanel {
 
     // Список координат точек для построения графика
-    private Double[][] graphicsData;
+    private PointSeries graphicsData;
 
 
 
@@ -30,6 +47,83 @@ public class GraphicsDisplay extends JPanel {
     private boolean showMarkers = true;
     private boolean showNullMarkers = false;
 
+    // Статистика ряда (границы, пересечения с осью X, классы точек) - вычисляется
+    // одним параллельным проходом при загрузке и дополняется только для добавленных точек
+    private SeriesStatistics statistics;
+
+    // Правило выделения маркеров точек
+    private PointClassifier classifier = new ParityClassifier();
+
+    // Границы данных графика
+    private double dataMinX;
+    private double dataMaxX;
+    private double dataMinY;
+    private double dataMaxY;
+
+    // Число точек, начиная с которого график прореживается по столбцам пикселей
+    public static final int DEFAULT_DECIMATION_THRESHOLD = 50000;
+
+    // Порог прореживания (0 - прореживать всегда, Integer.MAX_VALUE - никогда)
+    private int decimationThreshold = DEFAULT_DECIMATION_THRESHOLD;
+
+    // Число видимых точек, начиная с которого график рисуется по полосам в несколько
+    // потоков (если многопоточная отрисовка включена)
+    public static final int TILED_RENDERING_THRESHOLD = 100000;
+
+    // Рисовать большие упорядоченные по X графики по полосам на всех ядрах - все
+    // видимые точки, без прореживания
+    private boolean tiledRendering = false;
+    // Длины исходной ломаной до точек ряда - для фазы пунктира участков, рисуемых отдельно
+    private final PathLengths pathLengths = new PathLengths();
+    private final TiledLineRenderer tiledRenderer = new TiledLineRenderer(pathLengths);
+
+    // Ломаная графика в координатах данных - строится один раз при загрузке
+    // (только для рядов, которые не прореживаются)
+    private Path2D.Double dataGraphics;
+    // Число точек, уже вошедших в ломаную данных
+    private int dataGraphicsPoints;
+
+    // Буфер для точек, оставшихся после прореживания
+    private final PointSeries decimatedData = new PointSeries();
+
+    // Пирамида минимумов/максимумов ряда - строится один раз при загрузке
+    private MinMaxPyramid pyramid;
+
+    // Прореженная ломаная рисуется участками. Участок с пунктиром k продолжает рисунок
+    // пунктира исходной ломаной с её длины dashedPhases[k]; столбцы, сплошь закрашенные
+    // исходной ломаной, собираются в screenGraphics и рисуются сплошным пером
+    private final List<Shape> dashedGraphics = new ArrayList<>();
+    private double[] dashedPhases = new double[16];
+    // Длина исходной ломаной до каждой точки прореженной
+    private double[] decimatedLengths = new double[0];
+
+    // Столбец закрашен сплошь, если исходная ломаная проходит в нём весь рисунок пунктира
+    // и не меньше FILLED_PASSES раз его высоту: промежутки разных проходов перекрываются
+    private static final double FILLED_PASSES = 4;
+    // Наибольшее расхождение длин прореженной и исходной ломаных в участке с пунктиром;
+    // при большем расхождении начинается новый участок с фазой по исходной ломаной
+    private static final double DASH_DRIFT = 0.5;
+
+    // Изменение масштаба за один щелчок колёсика мыши
+    private static final double ZOOM_STEP = 1.25;
+
+    // Видимая область подогнана под весь график (true) или задана масштабированием и сдвигом
+    private boolean viewFitted = true;
+
+    // Диапазон индексов точек, попадающих в видимую область
+    private int visibleFrom;
+    private int visibleTo;
+
+    // Размеры компонента, для которых рассчитаны масштаб и преобразование
+    private int viewWidth = -1;
+    private int viewHeight = -1;
+
+    // Преобразование координат данных в экранные для текущих размеров
+    private AffineTransform dataToScreen;
+
+    // Ломаная графика в экранных координатах (null - ещё не построена)
+    private Shape screenGraphics;
+
     // Границы диапазона пространства, подлежащего отображению
     private double minX;
     private double maxX;
@@ -39,16 +133,149 @@ public class GraphicsDisplay extends JPanel {
     // Используемый масштаб отображения
     private double scale;
 
+    // Растрированные маркеры и отбор видимых маркеров
+    private final MarkerRenderer markerRenderer = new MarkerRenderer();
+
+    // Наибольшее расстояние от курсора до точки, которую показывает подсказка (в пикселях)
+    private static final double PICK_RADIUS = 10;
+
+    // Поиск точки под курсором (строится при первом наведении на график)
+    private PointPicker picker;
+
+    // Точка, закреплённая щелчком (-1 - нет)
+    private int pinnedPoint = -1;
+
+    // Название основного ряда в легенде
+    private String graphicsName = "";
+
+    // Ряды, наложенные на график для сравнения: рисуются в общих осях сплошными
+    // линиями своих цветов под основным графиком (маркеры и подсказки - только у основного)
+    private final List<Overlay> overlays = new ArrayList<>();
+
+    // Цвета наложенных рядов по порядку (при большем числе рядов повторяются)
+    private static final Color[] OVERLAY_COLORS = {
+            new Color(0, 90, 200), new Color(0, 140, 60), new Color(210, 120, 0),
+            new Color(140, 0, 170), new Color(0, 160, 170), Color.GRAY};
+
+    // Время на кадр по умолчанию (60 кадров в секунду)
+    public static final int DEFAULT_FRAME_BUDGET_MILLIS = 16;
+
+    // Пауза во взаимодействии, после которой черновик уточняется до полного качества
+    private static final int REFINE_DELAY_MILLIS = 250;
+
+    // Наибольшая ширина столбца черновика в пикселях
+    private static final int MAX_DRAFT_COARSENESS = 64;
+
+    // Если последняя отрисовка в полном качестве не уложилась во время на кадр,
+    // во время взаимодействия (изменение размеров, масштаба, сдвиг) рисуется черновик:
+    // прореженная линия тонким сплошным пером без сглаживания и без маркеров
+    private long frameBudgetNanos = DEFAULT_FRAME_BUDGET_MILLIS * 1000000L;
+    private boolean draft;
+    // Черновик уточняется по одному слою за кадр (true - уточнены ещё не все слои)
+    private boolean refining;
+    private final Timer refineTimer;
+    // Ширина столбца черновика в пикселях: растёт, пока черновик не уложится во время на кадр
+    private int draftCoarseness = 1;
+    private final BasicStroke draftStroke = new BasicStroke(1.0f);
+
+    // Сводка файла, по обзору которой рисуется линия графика, пока точки ряда
+    // ещё загружаются (null - ряд показывается без сводки или уже загружен)
+    private GraphicsSummary summary;
+    private MinMaxPyramid overviewPyramid;
+
+    // Буфер для точек наложенного ряда, оставшихся после прореживания
+    private final PointSeries decimatedOverlay = new PointSeries();
+
+    // Наложенный ряд: точки, подпись, цвет, пирамида прореживания и границы
+    private static class Overlay {
+        final PointSeries series;
+        final String name;
+        final Color color;
+        final MinMaxPyramid pyramid;
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        Overlay(PointSeries series, String name, Color color) {
+            this.series = series;
+            this.name = name;
+            this.color = color;
+            pyramid = new MinMaxPyramid(series);
+            for (int i = 0; i < series.size(); i++) {
+                minX = Math.min(minX, series.getX(i));
+                maxX = Math.max(maxX, series.getX(i));
+                minY = Math.min(minY, series.getY(i));
+                maxY = Math.max(maxY, series.getY(i));
+            }
+        }
+    }
+
+    // Слой изображения: готовая картинка, признак её актуальности и замеры
+    // последней перерисовки
+    private static class Layer {
+        // Номер слоя в PlotMetrics и подпись в окне замеров
+        final int id;
+        final String title;
+        BufferedImage image;
+        boolean valid;
+        // Перерисован ли слой в текущем кадре (false - выведен из кэша)
+        boolean repainted;
+        long paintNanos;
+        long pointsDrawn;
+        // Время последней перерисовки в полном качестве (не черновика)
+        long qualityNanos;
+
+        Layer(int id, String title) {
+            this.id = id;
+            this.title = title;
+        }
+    }
+
+    // Кэшированные слои: оси, линия графика, маркеры точек, маркеры нулей
+    private final Layer axisLayer = new Layer(PlotMetrics.AXIS, "оси");
+    private final Layer graphicsLayer = new Layer(PlotMetrics.GRAPHICS, "линия");
+    private final Layer markersLayer = new Layer(PlotMetrics.MARKERS, "маркеры");
+    private final Layer nullMarkersLayer = new Layer(PlotMetrics.NULL_MARKERS, "нули");
+
+    // Число точек, нарисованных последним вызовом метода рисования слоя
+    private long pointsDrawn;
+
+    // Показывать ли поверх графика время отрисовки кадра и слоёв
+    private boolean showFrameTime = false;
+    private long frameNanos;
+    private int layersRepainted;
+
     // Различные стили черчения линий
     private BasicStroke graphicsStroke;
+    private BasicStroke decimatedStroke;
     private BasicStroke axisStroke;
-    private BasicStroke markerStroke;
 
     private DecimalFormat formatter =
             (DecimalFormat) NumberFormat.getInstance();
+    // Шаг делений, под который настроен formatter
+    private double formattedStep = Double.NaN;
+
+    // Наименьшее расстояние между делениями осей в пикселях и длина половины деления
+    private static final double MIN_TICK_SPACING = 80;
+    private static final double TICK_LENGTH = 4;
+    // Предел числа делений на оси: при огромных координатах и малом диапазоне шаг
+    // теряется в погрешности, и цикл по делениям не должен зависеть от неё
+    private static final int MAX_TICKS = 256;
+
+    // Стрелки осей с остриём в начале координат: оси Y - вверх, оси X - вправо
+    private static final Shape Y_ARROW = arrow(0, 0, 5, 20, -5, 20);
+    private static final Shape X_ARROW = arrow(0, 0, -20, -5, -20, 5);
+
+    // Разложенные подписи осей и делений
+    private final AxisLabelCache axisLabels = new AxisLabelCache();
+    private final AxisLabelCache tickLabels = new AxisLabelCache();
+    private BasicStroke tickStroke;
 
     // Различные шрифты отображения надписей
     private Font axisFont;
+    private Font tickFont;
+    private Font frameTimeFont;
 
     public GraphicsDisplay() {
         // Цвет заднего фона области отображения - белый
@@ -59,27 +286,266 @@ public class GraphicsDisplay extends JPanel {
 //                BasicStroke.JOIN_ROUND, 10.0f, null, 0.0f);
         graphicsStroke = new BasicStroke(2.0f, BasicStroke.CAP_BUTT,
                 BasicStroke.JOIN_ROUND, 10.0f, new float[] {40, 20, 20, 40, 10}, 0.0f);
+        // Сплошное перо для наложенных рядов и для столбцов прореженного графика,
+        // в которых пунктир исходной ломаной сливается в сплошную линию
+        decimatedStroke = new BasicStroke(2.0f, BasicStroke.CAP_BUTT,
+                BasicStroke.JOIN_ROUND, 10.0f, null, 0.0f);
         // Перо для рисования осей координат
         axisStroke = new BasicStroke(2.0f, BasicStroke.CAP_BUTT,
                 BasicStroke.JOIN_MITER, 10.0f, null, 0.0f);
-        // Перо для рисования контуров маркеров
-        markerStroke = new BasicStroke(1.0f, BasicStroke.CAP_BUTT,
-                BasicStroke.JOIN_MITER, 10.0f, null, 0.0f);
         // Шрифт для подписей осей координат
         axisFont = new Font("Serif", Font.BOLD, 36);
+        // Шрифт и перо для делений осей
+        tickFont = new Font(Font.SANS_SERIF, Font.PLAIN, 12);
+        tickStroke = new BasicStroke(1.0f);
+        // Шрифт для времени отрисовки
+        frameTimeFont = new Font(Font.MONOSPACED, Font.PLAIN, 12);
+
+        // Масштабирование колёсиком мыши, сдвиг перетаскиванием, двойной щелчок - весь график
+        MouseAdapter navigation = new MouseAdapter() {
+            private int lastX;
+            private int lastY;
+
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+            }
+
+            public void mousePressed(MouseEvent e) {
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+
+            public void mouseDragged(MouseEvent e) {
+                setCursor(Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR));
+                pan(e.getX() - lastX, e.getY() - lastY);
+                lastX = e.getX();
+                lastY = e.getY();
+            }
+
+            public void mouseReleased(MouseEvent e) {
+                setCursor(Cursor.getDefaultCursor());
+            }
+
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2) {
+                    resetView();
+                } else if (e.getClickCount() == 1) {
+                    // Щелчок рядом с точкой закрепляет её значение на графике, щелчок мимо точек - снимает
+                    pinnedPoint = pickPoint(e.getX(), e.getY());
+                    repaint();
+                }
+            }
+        };
+        addMouseListener(navigation);
+        addMouseMotionListener(navigation);
+        addMouseWheelListener(navigation);
+        // Пока размеры окна меняются, рисуется черновик (но не в невидимом
+        // отображателе, который рисует изображения, как BatchRenderer)
+        addComponentListener(new ComponentAdapter() {
+            public void componentResized(ComponentEvent e) {
+                if (isShowing()) {
+                    interacted();
+                }
+            }
+        });
+        refineTimer = new Timer(REFINE_DELAY_MILLIS, e -> refine());
+        refineTimer.setRepeats(false);
+        // Подсказка со значением точки под курсором (текст - getToolTipText)
+        ToolTipManager.sharedInstance().registerComponent(this);
     }
 
     // Данный метод вызывается из обработчика элемента меню "Открыть файл с графиком"
     // главного окна приложения в случае успешной загрузки данных
-    public void showGraphics(Double[][] graphicsData) {
+    public void showGraphics(PointSeries graphicsData) {
+        showGraphics(graphicsData, null);
+    }
+
+    // Показать ряд, точки которого ещё загружаются, по сводке его файла: границы,
+    // линия графика и нули берутся из сводки, пока в ряду не окажутся все точки
+    public void showGraphics(PointSeries graphicsData, GraphicsSummary summary) {
         // Сохранить массив точек во внутреннем поле класса
         this.graphicsData = graphicsData;
+        boolean incomplete = summary != null && graphicsData.size() < summary.getPointCount();
+        this.summary = incomplete ? summary : null;
+        overviewPyramid = incomplete ? new MinMaxPyramid(summary.getOverview()) : null;
         // Сохранение границ по умолчанию
+        statistics = new SeriesStatistics(graphicsData, classifier);
+        updateDataBounds();
+        dataGraphics = null;
+        pyramid = new MinMaxPyramid(graphicsData);
+        picker = null;
+        pinnedPoint = -1;
+        // Наложенные ряды сравнивались с прежним графиком
+        overlays.clear();
+        // Масштаб будет пересчитан при следующей перерисовке
+        viewFitted = true;
+        viewWidth = -1;
+        viewHeight = -1;
 
         repaint();
     }
 
 
+    // Данный метод вызывается, когда в конец показанного ряда добавлены точки
+    // (например, при постепенной загрузке файла): границы, ломаная и пирамида
+    // дополняются новыми точками, а не строятся заново
+    public void graphicsAppended() {
+        if (graphicsData == null) return;
+        if (dataGraphics != null) {
+            for (int i = dataGraphicsPoints; i < graphicsData.size(); i++) {
+                if (i == 0) {
+                    dataGraphics.moveTo(graphicsData.getX(i), graphicsData.getY(i));
+                } else {
+                    dataGraphics.lineTo(graphicsData.getX(i), graphicsData.getY(i));
+                }
+            }
+            dataGraphicsPoints = graphicsData.size();
+        }
+        statistics.update();
+        // Все точки загружены - сводка больше не нужна
+        if (summary != null && graphicsData.size() >= summary.getPointCount()) {
+            summary = null;
+            overviewPyramid = null;
+        }
+        updateDataBounds();
+        pyramid.extend();
+        // Добавленные точки нарушили упорядоченность по X - двоичный поиск больше неприменим
+        if (picker != null && picker.isXSorted() != pyramid.isXSorted()) {
+            picker = null;
+        }
+        if (viewFitted) {
+            viewWidth = -1;
+        } else if (dataToScreen != null) {
+            applyView();
+        }
+        repaint();
+    }
+
+    // Наложить на показанный график ряды series с подписями names (пустой список -
+    // убрать наложенные ряды). Оси охватывают все ряды, вид подгоняется заново
+    public void setOverlays(List<PointSeries> series, List<String> names) {
+        overlays.clear();
+        for (int i = 0; i < series.size(); i++) {
+            if (series.get(i).isEmpty()) continue;
+            overlays.add(new Overlay(series.get(i), names.get(i), OVERLAY_COLORS[i % OVERLAY_COLORS.length]));
+        }
+        if (graphicsData == null) return;
+        updateDataBounds();
+        resetView();
+    }
+
+    // Название основного ряда в легенде (легенда видна, когда на график наложены ряды)
+    public void setGraphicsName(String graphicsName) {
+        this.graphicsName = graphicsName;
+        repaint();
+    }
+
+    // Сводка показанного ряда для сохранения рядом с его файлом: границы, пересечения
+    // с осью и обзор, прореженный пирамидой. null - ряд пуст, не упорядочен по X
+    // (обзор по столбцам для него не строится) или ещё не загружен целиком
+    public GraphicsSummary createSummary() {
+        if (graphicsData == null || graphicsData.isEmpty() || summary != null || !pyramid.isXSorted()) return null;
+        double firstX = graphicsData.getX(0);
+        double lastX = graphicsData.getX(graphicsData.size() - 1);
+        PointSeries overview = new PointSeries();
+        pyramid.decimate(0, graphicsData.size(), firstX,
+                lastX > firstX ? GraphicsSummary.OVERVIEW_COLUMNS / (lastX - firstX) : 1, overview);
+        double[] zeroCrossings = null;
+        if (statistics.getZeroCrossingCount() <= GraphicsSummary.MAX_ZERO_CROSSINGS) {
+            zeroCrossings = new double[statistics.getZeroCrossingCount()];
+            for (int i = 0; i < zeroCrossings.length; i++) {
+                zeroCrossings[i] = statistics.getZeroCrossing(i);
+            }
+        }
+        return new GraphicsSummary(graphicsData.size(), firstX, lastX, statistics.getMinY(), statistics.getMaxY(),
+                zeroCrossings, overview);
+    }
+
+    // Порог числа точек, начиная с которого включается прореживание графика
+    public void setDecimationThreshold(int decimationThreshold) {
+        this.decimationThreshold = decimationThreshold;
+        dataGraphics = null;
+        screenGraphics = null;
+        graphicsLayer.valid = false;
+        repaint();
+    }
+
+    public int getDecimationThreshold() {
+        return decimationThreshold;
+    }
+
+    // Правило выделения маркеров; классы точек показанного ряда пересчитываются сразу
+    public void setClassifier(PointClassifier classifier) {
+        this.classifier = classifier;
+        if (graphicsData != null) {
+            statistics = new SeriesStatistics(graphicsData, classifier);
+        }
+        markersLayer.valid = false;
+        repaint();
+    }
+
+    public PointClassifier getClassifier() {
+        return classifier;
+    }
+
+    // Многопоточная отрисовка больших графиков по вертикальным полосам
+    public void setTiledRendering(boolean tiledRendering) {
+        this.tiledRendering = tiledRendering;
+        screenGraphics = null;
+        graphicsLayer.valid = false;
+        repaint();
+    }
+
+    public boolean isTiledRendering() {
+        return tiledRendering;
+    }
+
+    // Рисуется ли график по полосам: только ряд, упорядоченный по X (тогда точки каждой
+    // полосы - непрерывный участок ряда), с большим числом видимых точек. Такой ряд
+    // не прореживается: полосы рисуют все видимые точки полным пером, как небольшой ряд.
+    // Пока вид меняется, рисуется черновик, а по полосам - уточнённый график
+    private boolean isTiled() {
+        return tiledRendering && pyramid.isXSorted()
+                && visibleTo - visibleFrom >= TILED_RENDERING_THRESHOLD;
+    }
+
+    private boolean isDecimated() {
+        return graphicsData.size() >= decimationThreshold;
+    }
+
+    // Изменить масштаб в factor раз так, чтобы точка экрана (screenX, screenY) осталась на месте
+    public void zoom(double factor, double screenX, double screenY) {
+        if (!hasGraphics() || dataToScreen == null) return;
+        interacted();
+        double x = minX + screenX / scale;
+        double y = maxY - screenY / scale;
+        scale *= factor;
+        minX = x - screenX / scale;
+        maxY = y + screenY / scale;
+        viewFitted = false;
+        applyView();
+        repaint();
+    }
+
+    // Сдвинуть видимую область на (deltaX, deltaY) пикселей вслед за курсором
+    public void pan(double deltaX, double deltaY) {
+        if (!hasGraphics() || dataToScreen == null) return;
+        interacted();
+        minX -= deltaX / scale;
+        maxY += deltaY / scale;
+        viewFitted = false;
+        applyView();
+        repaint();
+    }
+
+    // Вернуться к отображению всего графика
+    public void resetView() {
+        viewFitted = true;
+        viewWidth = -1;
+        viewHeight = -1;
+        repaint();
+    }
+
     // Методы-модификаторы для изменения параметров отображения графика
     // Изменение любого параметра приводит к перерисовке области
     public void setShowAxis(boolean showAxis) {
@@ -96,26 +562,426 @@ public class GraphicsDisplay extends JPanel {
         repaint();
     }
 
+    public void setShowFrameTime(boolean showFrameTime) {
+        this.showFrameTime = showFrameTime;
+        repaint();
+    }
+
+    // Время на кадр во время взаимодействия (0 - всегда рисовать черновик,
+    // Integer.MAX_VALUE - никогда)
+    public void setFrameBudgetMillis(int frameBudgetMillis) {
+        if (frameBudgetMillis < 0) {
+            throw new IllegalArgumentException("Недопустимое время на кадр: " + frameBudgetMillis);
+        }
+        frameBudgetNanos = frameBudgetMillis * 1000000L;
+    }
+
+    public int getFrameBudgetMillis() {
+        return (int) (frameBudgetNanos / 1000000L);
+    }
+
+    public boolean isDraft() {
+        return draft;
+    }
+
+    // Началось или продолжается взаимодействие: рисовать черновик, если полная
+    // отрисовка не укладывается во время на кадр, и уточнить его после паузы
+    private void interacted() {
+        refining = false;
+        if (draft) {
+            refineTimer.restart();
+            return;
+        }
+        long qualityNanos = graphicsLayer.qualityNanos
+                + (showMarkers ? markersLayer.qualityNanos : 0)
+                + (showNullMarkers ? nullMarkersLayer.qualityNanos : 0);
+        if (qualityNanos <= frameBudgetNanos) return;
+        draft = true;
+        graphicsLayer.valid = false;
+        refineTimer.restart();
+    }
+
+    // Пауза во взаимодействии: заменить черновик полной отрисовкой
+    private void refine() {
+        if (!draft) return;
+        draft = false;
+        refining = true;
+        screenGraphics = null;
+        graphicsLayer.valid = false;
+        repaint();
+    }
+
 
     public void paintComponent(Graphics g) {
 
         super.paintComponent(g);
 
-        if (graphicsData==null || graphicsData.length==0) return;
+        if (!hasGraphics()) return;
+
+        if (getWidth() != viewWidth || getHeight() != viewHeight) {
+            updateView();
+        }
+
+        Graphics2D canvas = (Graphics2D) g;
+        FramePaintEvent frameEvent = new FramePaintEvent();
+        frameEvent.begin();
+        long frameStart = System.nanoTime();
+        layersRepainted = 0;
+
+        // Каждый слой перерисовывается только после изменения данных, размеров или
+        // видимой области; переключение флагов лишь меняет набор выводимых слоёв
+        if (showAxis) paintLayer(canvas, axisLayer, this::paintAxis);
+
+        if (draft) {
+            paintLayer(canvas, graphicsLayer, this::paintDraftGraphics);
+            if (graphicsLayer.repainted) {
+                adjustDraftCoarseness(graphicsLayer.paintNanos);
+            }
+        } else {
+            // Уточнение черновика: за кадр перерисовывается один слой, остальные - в
+            // следующих кадрах, так что между ними обрабатываются события ввода
+            boolean skipped = !paintRefinedLayer(canvas, graphicsLayer, this::paintGraphics);
+            if (showMarkers) skipped |= !paintRefinedLayer(canvas, markersLayer, this::paintMarkers);
+            if (showNullMarkers) skipped |= !paintRefinedLayer(canvas, nullMarkersLayer, this::paintNullMarkers);
+            refining = skipped;
+            if (skipped) repaint();
+        }
+
+        frameNanos = System.nanoTime() - frameStart;
+        PlotMetrics.getInstance().framePainted(frameNanos);
+        frameEvent.end();
+        if (frameEvent.shouldCommit()) {
+            frameEvent.layersRepainted = layersRepainted;
+            frameEvent.width = getWidth();
+            frameEvent.height = getHeight();
+            frameEvent.commit();
+        }
+
+        if (pinnedPoint >= 0) paintPinnedPoint(canvas);
+        if (!overlays.isEmpty()) paintLegend(canvas);
+        if (showFrameTime) paintFrameTime(canvas);
+    }
+
+    // Вывести слой, если при уточнении черновика в этом кадре ещё не перерисован
+    // другой слой; возвращает false, если устаревший слой отложен до следующего кадра
+    private boolean paintRefinedLayer(Graphics2D canvas, Layer layer, Consumer<Graphics2D> painter) {
+        if (refining && !layer.valid && layersRepainted > 0) return false;
+        paintLayer(canvas, layer, painter);
+        return true;
+    }
+
+    // Столбцы черновика вдвое шире, если он не уложился во время на кадр, и вдвое
+    // уже, если занял меньше четверти этого времени
+    private void adjustDraftCoarseness(long paintNanos) {
+        if (paintNanos > frameBudgetNanos && draftCoarseness < MAX_DRAFT_COARSENESS) {
+            draftCoarseness *= 2;
+        } else if (paintNanos < frameBudgetNanos / 4 && draftCoarseness > 1) {
+            draftCoarseness /= 2;
+        }
+    }
+
+    // Есть ли что рисовать: точки ряда или сводка его файла
+    private boolean hasGraphics() {
+        return graphicsData != null && (!graphicsData.isEmpty() || summary != null);
+    }
+
+    // Номер точки графика рядом с точкой экрана (screenX, screenY) или -1
+    public int pickPoint(double screenX, double screenY) {
+        if (graphicsData == null || graphicsData.isEmpty() || dataToScreen == null) return -1;
+        if (picker == null) {
+            picker = new PointPicker(graphicsData, pyramid);
+        }
+        return picker.nearest(minX + screenX / scale, maxY - screenY / scale, scale, scale, PICK_RADIUS);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        int i = pickPoint(event.getX(), event.getY());
+        return i >= 0 ? describePoint(i) : null;
+    }
+
+    private String describePoint(int i) {
+        // Компактный ряд хранит значения приближённо - в подсказке нужны точные
+        return String.format("точка %,d: x = %s, y = %s", i, graphicsData.getExactX(i), graphicsData.getExactY(i));
+    }
+
+    // Закреплённая точка: кольцо вокруг неё и подпись со значением
+    private void paintPinnedPoint(Graphics2D canvas) {
+        double x = xToScreen(graphicsData.getX(pinnedPoint));
+        double y = yToScreen(graphicsData.getY(pinnedPoint));
+        canvas.setColor(Color.DARK_GRAY);
+        canvas.setStroke(axisStroke);
+        canvas.draw(new Ellipse2D.Double(x - 8, y - 8, 16, 16));
+
+        String text = describePoint(pinnedPoint);
+        canvas.setFont(frameTimeFont);
+        FontMetrics metrics = canvas.getFontMetrics();
+        int width = metrics.stringWidth(text) + 8;
+        int height = metrics.getHeight() + 4;
+        // Подпись справа сверху от точки, но в пределах компонента
+        int left = (int) Math.min(x + 12, getWidth() - width - 2);
+        int top = (int) Math.max(y - 12 - height, 2);
+        canvas.setColor(new Color(255, 255, 255, 220));
+        canvas.fillRect(left, top, width, height);
+        canvas.setColor(Color.DARK_GRAY);
+        canvas.drawRect(left, top, width, height);
+        canvas.drawString(text, left + 4, top + 2 + metrics.getAscent());
+    }
 
-        minX = graphicsData[0][0];
-        maxX = graphicsData[graphicsData.length-1][0];
-        minY = graphicsData[0][1];
-        maxY = minY;
+    // Легенда в правом верхнем углу: цвет и название каждого ряда
+    private void paintLegend(Graphics2D canvas) {
+        canvas.setFont(frameTimeFont);
+        FontMetrics metrics = canvas.getFontMetrics();
+        int textWidth = metrics.stringWidth(graphicsName);
+        for (Overlay overlay : overlays) {
+            textWidth = Math.max(textWidth, metrics.stringWidth(overlay.name));
+        }
+        int lineHeight = metrics.getHeight();
+        int width = textWidth + 40;
+        int left = getWidth() - width - 4;
+        canvas.setColor(new Color(255, 255, 255, 200));
+        canvas.fillRect(left, 4, width, lineHeight * (overlays.size() + 1) + 8);
+        canvas.setStroke(decimatedStroke);
+        for (int i = 0; i <= overlays.size(); i++) {
+            int baseline = 8 + metrics.getAscent() + i * lineHeight;
+            int middle = baseline - metrics.getAscent() / 2;
+            canvas.setColor(i == 0 ? Color.RED : overlays.get(i - 1).color);
+            canvas.drawLine(left + 6, middle, left + 26, middle);
+            canvas.setColor(Color.DARK_GRAY);
+            canvas.drawString(i == 0 ? graphicsName : overlays.get(i - 1).name, left + 32, baseline);
+        }
+    }
 
-        for (int i = 1; i<graphicsData.length; i++) {
-            if (graphicsData[i][1]<minY) {
-                minY = graphicsData[i][1];
+    // Вывести слой на холст, предварительно перерисовав его, если он устарел
+    private void paintLayer(Graphics2D canvas, Layer layer, Consumer<Graphics2D> painter) {
+        // Масштаб устройства (на экранах высокой плотности больше 1)
+        AffineTransform device = canvas.getTransform();
+        double deviceScaleX = device.getScaleX();
+        double deviceScaleY = device.getScaleY();
+        int imageWidth = (int) Math.ceil(getWidth() * deviceScaleX);
+        int imageHeight = (int) Math.ceil(getHeight() * deviceScaleY);
+        if (imageWidth <= 0 || imageHeight <= 0) return;
+
+        if (layer.image == null || layer.image.getWidth() != imageWidth
+                || layer.image.getHeight() != imageHeight) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            layer.image = configuration != null
+                    ? configuration.createCompatibleImage(imageWidth, imageHeight, Transparency.TRANSLUCENT)
+                    : new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_ARGB_PRE);
+            layer.valid = false;
+        }
+        layer.repainted = !layer.valid;
+        if (!layer.valid) {
+            Graphics2D layerCanvas = layer.image.createGraphics();
+            // Очистить слой до полной прозрачности
+            layerCanvas.setComposite(AlphaComposite.Clear);
+            layerCanvas.fillRect(0, 0, imageWidth, imageHeight);
+            layerCanvas.setComposite(AlphaComposite.SrcOver);
+            layerCanvas.setRenderingHints(canvas.getRenderingHints());
+            layerCanvas.scale(deviceScaleX, deviceScaleY);
+            LayerPaintEvent event = new LayerPaintEvent();
+            event.begin();
+            long start = System.nanoTime();
+            pointsDrawn = 0;
+            painter.accept(layerCanvas);
+            layer.paintNanos = System.nanoTime() - start;
+            layer.pointsDrawn = pointsDrawn;
+            if (!draft) {
+                layer.qualityNanos = layer.paintNanos;
             }
-            if (graphicsData[i][1]>maxY) {
-                maxY = graphicsData[i][1];
+            event.end();
+            layerCanvas.dispose();
+            layer.valid = true;
+            layersRepainted++;
+            PlotMetrics.getInstance().layerPainted(layer.id, layer.paintNanos, layer.pointsDrawn);
+            if (event.shouldCommit()) {
+                event.layer = PlotMetrics.getLayerName(layer.id);
+                event.pointsDrawn = layer.pointsDrawn;
+                event.width = imageWidth;
+                event.height = imageHeight;
+                event.commit();
+            }
+        }
+        canvas.drawImage(layer.image, 0, 0, getWidth(), getHeight(), null);
+    }
+
+    // Время отрисовки кадра и каждого выведенного слоя в левом верхнем углу
+    private void paintFrameTime(Graphics2D canvas) {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("кадр     %7.2f мс%s", PlotMetrics.toMillis(frameNanos),
+                draft ? String.format(" (черновик, столбец %d пикс.)", draftCoarseness) : ""));
+        for (Layer layer : new Layer[] {axisLayer, graphicsLayer, markersLayer, nullMarkersLayer}) {
+            if (layer == axisLayer && !showAxis || layer == markersLayer && (!showMarkers || draft)
+                    || layer == nullMarkersLayer && (!showNullMarkers || draft)) continue;
+            // Для слоя из кэша показывается время его последней перерисовки
+            String points = layer == axisLayer ? "" : String.format(", точек %,d", layer.pointsDrawn);
+            lines.add(String.format("%-8s %7.2f мс%s%s", layer.title, PlotMetrics.toMillis(layer.paintNanos),
+                    points, layer.repainted ? "" : " (из кэша)"));
+        }
+
+        canvas.setFont(frameTimeFont);
+        FontMetrics metrics = canvas.getFontMetrics();
+        int textWidth = 0;
+        for (String line : lines) {
+            textWidth = Math.max(textWidth, metrics.stringWidth(line));
+        }
+        int lineHeight = metrics.getHeight();
+        canvas.setColor(new Color(255, 255, 255, 200));
+        canvas.fillRect(4, 4, textWidth + 8, lineHeight * lines.size() + 8);
+        canvas.setColor(Color.DARK_GRAY);
+        for (int i = 0; i < lines.size(); i++) {
+            canvas.drawString(lines.get(i), 8, 8 + metrics.getAscent() + i * lineHeight);
+        }
+    }
+
+    // Пометить все слои устаревшими
+    private void invalidateLayers() {
+        axisLayer.valid = false;
+        graphicsLayer.valid = false;
+        markersLayer.valid = false;
+        nullMarkersLayer.valid = false;
+    }
+
+    // Границы данных: по X - от первой до последней точки, по Y - из статистики ряда;
+    // наложенные ряды расширяют границы до своих
+    private void updateDataBounds() {
+        if (summary != null) {
+            // Пока ряд загружается, границы всего файла известны только из сводки
+            dataMinX = summary.getMinX();
+            dataMaxX = summary.getMaxX();
+            dataMinY = summary.getMinY();
+            dataMaxY = summary.getMaxY();
+        } else {
+            if (graphicsData.isEmpty()) return;
+            dataMinX = graphicsData.getX(0);
+            dataMaxX = graphicsData.getX(graphicsData.size()-1);
+            dataMinY = statistics.getMinY();
+            dataMaxY = statistics.getMaxY();
+        }
+        for (Overlay overlay : overlays) {
+            dataMinX = Math.min(dataMinX, overlay.minX);
+            dataMaxX = Math.max(dataMaxX, overlay.maxX);
+            dataMinY = Math.min(dataMinY, overlay.minY);
+            dataMaxY = Math.max(dataMaxY, overlay.maxY);
+        }
+    }
+
+    // Построение ломаной графика в координатах данных
+    private Path2D.Double buildDataGraphics() {
+        Path2D.Double graphics = new Path2D.Double(Path2D.WIND_NON_ZERO, graphicsData.size());
+        if (!graphicsData.isEmpty()) {
+            graphics.moveTo(graphicsData.getX(0), graphicsData.getY(0));
+            for (int i = 1; i < graphicsData.size(); i++) {
+                graphics.lineTo(graphicsData.getX(i), graphicsData.getY(i));
             }
         }
+        dataGraphicsPoints = graphicsData.size();
+        return graphics;
+    }
+
+    private Path2D.Double getDataGraphics() {
+        if (dataGraphics == null) {
+            dataGraphics = buildDataGraphics();
+        }
+        return dataGraphics;
+    }
+
+    // Построение экранной ломаной только через первую, последнюю, минимальную
+    // и максимальную точки каждого столбца пикселей видимой области. Возвращает
+    // сплошь закрашенные столбцы, участки с пунктиром - в dashedGraphics
+    private Shape buildDecimatedGraphics() {
+        pyramid.decimate(visibleFrom, visibleTo, minX, scale, decimatedData);
+        dashedGraphics.clear();
+        Path2D.Double filled = new Path2D.Double();
+        int count = decimatedData.size();
+        if (count == 0) {
+            return filled;
+        }
+        if (decimatedLengths.length < count) {
+            decimatedLengths = new double[Math.max(count, decimatedLengths.length * 2)];
+        }
+        for (int k = 0; k < count; k++) {
+            decimatedLengths[k] = pathLengths.lengthTo(graphicsData, pyramid.getDecimatedIndex(k), dataToScreen);
+        }
+        double period = PathLengths.dashPeriod(graphicsStroke);
+
+        // Текущий участок с пунктиром (null - текущий участок сплошной), длина исходной
+        // ломаной до его начала и длина прореженной ломаной в нём
+        Path2D.Double dashed = null;
+        double dashedStart = 0;
+        double dashedLength = 0;
+        boolean inFilled = false;
+        int k = 0;
+        while (k < count) {
+            // Точки [k, end) одного столбца; отрезок из предыдущего столбца относится к этому
+            double column = Math.floor(xToScreen(decimatedData.getX(k)));
+            double top = yToScreen(decimatedData.getY(k));
+            double bottom = top;
+            int end = k + 1;
+            while (end < count && Math.floor(xToScreen(decimatedData.getX(end))) == column) {
+                double y = yToScreen(decimatedData.getY(end));
+                top = Math.min(top, y);
+                bottom = Math.max(bottom, y);
+                end++;
+            }
+            double length = decimatedLengths[end - 1] - decimatedLengths[k];
+            boolean columnFilled = period > 0 && length >= period
+                    && length >= FILLED_PASSES * Math.max(bottom - top, 1);
+            int start = Math.max(0, k - 1);
+            double x = xToScreen(decimatedData.getX(start));
+            double y = yToScreen(decimatedData.getY(start));
+            if (columnFilled) {
+                if (!inFilled) {
+                    filled.moveTo(x, y);
+                    inFilled = true;
+                    dashed = null;
+                }
+                for (int i = start + 1; i < end; i++) {
+                    filled.lineTo(xToScreen(decimatedData.getX(i)), yToScreen(decimatedData.getY(i)));
+                }
+            } else {
+                if (dashed == null || Math.abs(decimatedLengths[start] - dashedStart - dashedLength) > DASH_DRIFT) {
+                    dashed = new Path2D.Double();
+                    dashed.moveTo(x, y);
+                    dashedStart = decimatedLengths[start];
+                    dashedLength = 0;
+                    if (dashedGraphics.size() == dashedPhases.length) {
+                        dashedPhases = Arrays.copyOf(dashedPhases, dashedPhases.length * 2);
+                    }
+                    dashedPhases[dashedGraphics.size()] = dashedStart;
+                    dashedGraphics.add(dashed);
+                }
+                inFilled = false;
+                for (int i = start + 1; i < end; i++) {
+                    double nextX = xToScreen(decimatedData.getX(i));
+                    double nextY = yToScreen(decimatedData.getY(i));
+                    dashed.lineTo(nextX, nextY);
+                    dashedLength += Math.hypot(nextX - x, nextY - y);
+                    x = nextX;
+                    y = nextY;
+                }
+            }
+            k = end;
+        }
+        return filled;
+    }
+
+    // Пересчёт масштаба и видимой области; вызывается только при изменении размеров компонента
+    private void updateView() {
+        viewWidth = getWidth();
+        viewHeight = getHeight();
+        if (viewFitted) {
+            fitView();
+        }
+        applyView();
+    }
+
+    // Масштаб и границы, при которых весь график помещается в компонент
+    private void fitView() {
+        minX = dataMinX;
+        maxX = dataMaxX;
+        minY = dataMinY;
+        maxY = dataMaxY;
 
         double scaleX = getSize().getWidth() / (maxX - minX);
         double scaleY = getSize().getHeight() / (maxY - minY);
@@ -137,212 +1003,428 @@ public class GraphicsDisplay extends JPanel {
             minX -= xIncrement;
         }
 
-        Graphics2D canvas = (Graphics2D) g;
-        Stroke oldStroke = canvas.getStroke();
-        Color oldColor = canvas.getColor();
-        Paint oldPaint = canvas.getPaint();
-        Font oldFont = canvas.getFont();
+    }
 
-        if (showAxis) paintAxis(canvas);
+    // Пересчёт преобразования и видимого диапазона точек для текущих minX, maxY и scale
+    private void applyView() {
+        maxX = minX + viewWidth / scale;
+        minY = maxY - viewHeight / scale;
+        // То же преобразование, что и в xToScreen/yToScreen: сдвиг к (minX, maxY) и масштаб с отражением Y
+        dataToScreen = new AffineTransform(scale, 0, 0, -scale, -minX * scale, maxY * scale);
+
+        if (pyramid.isXSorted()) {
+            // Захватить по одной точке за краями, чтобы отрезки доходили до границ
+            visibleFrom = Math.max(0, graphicsData.lowerBoundX(minX) - 1);
+            visibleTo = Math.min(graphicsData.size(), graphicsData.upperBoundX(maxX) + 1);
+        } else {
+            visibleFrom = 0;
+            visibleTo = graphicsData.size();
+        }
+        screenGraphics = null;
+        invalidateLayers();
+    }
 
-        paintGraphics(canvas);
+    // Отрисовка графика по прочитанным координатам
+    protected void paintGraphics(Graphics2D canvas) {
+        long overlayPoints = 0;
+        for (Overlay overlay : overlays) {
+            overlayPoints += paintLine(canvas, overlay.series, overlay.pyramid, overlay.color);
+        }
+        paintMainGraphics(canvas);
+        pointsDrawn += overlayPoints;
+    }
 
-        if (showMarkers) paintMarkers(canvas);
-        if (showNullMarkers) paintNullMarkers(canvas);
+    // Наложенный ряд или обзор из сводки рисуется сплошной линией: видимой частью,
+    // большой ряд - прореженным; возвращает число нарисованных точек
+    private int paintLine(Graphics2D canvas, PointSeries series, MinMaxPyramid pyramid, Color color) {
+        int from = 0;
+        int to = series.size();
+        if (pyramid.isXSorted()) {
+            from = Math.max(0, series.lowerBoundX(minX) - 1);
+            to = Math.min(series.size(), series.upperBoundX(maxX) + 1);
+        }
+        if (series.size() >= decimationThreshold) {
+            pyramid.decimate(from, to, minX, scale, decimatedOverlay);
+            series = decimatedOverlay;
+            from = 0;
+            to = series.size();
+        }
+        if (to - from < 2) return to - from;
+        Path2D.Double line = new Path2D.Double(Path2D.WIND_NON_ZERO, to - from);
+        line.moveTo(xToScreen(series.getX(from)), yToScreen(series.getY(from)));
+        for (int i = from + 1; i < to; i++) {
+            line.lineTo(xToScreen(series.getX(i)), yToScreen(series.getY(i)));
+        }
+        canvas.setStroke(decimatedStroke);
+        canvas.setColor(color);
+        canvas.draw(line);
+        return to - from;
+    }
 
-        canvas.setFont(oldFont);
-        canvas.setPaint(oldPaint);
-        canvas.setColor(oldColor);
-        canvas.setStroke(oldStroke);
+    // Черновик линии графика: все ряды прореживаются по столбцам шириной
+    // draftCoarseness пикселей и рисуются тонким пером без сглаживания
+    private void paintDraftGraphics(Graphics2D canvas) {
+        canvas.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        canvas.setStroke(draftStroke);
+        long points = 0;
+        for (Overlay overlay : overlays) {
+            points += paintDraftLine(canvas, overlay.series, overlay.pyramid, overlay.color);
+        }
+        points += summary != null ? paintDraftLine(canvas, summary.getOverview(), overviewPyramid, Color.RED)
+                : paintDraftLine(canvas, graphicsData, pyramid, Color.RED);
+        pointsDrawn = points;
     }
 
-    // Отрисовка графика по прочитанным координатам
-    protected void paintGraphics(Graphics2D canvas) {
+    private int paintDraftLine(Graphics2D canvas, PointSeries series, MinMaxPyramid pyramid, Color color) {
+        int from = 0;
+        int to = series.size();
+        if (pyramid.isXSorted()) {
+            from = Math.max(0, series.lowerBoundX(minX) - 1);
+            to = Math.min(series.size(), series.upperBoundX(maxX) + 1);
+        }
+        pyramid.decimate(from, to, minX, scale / draftCoarseness, decimatedOverlay);
+        if (decimatedOverlay.size() < 2) return decimatedOverlay.size();
+        Path2D.Double line = new Path2D.Double(Path2D.WIND_NON_ZERO, decimatedOverlay.size());
+        line.moveTo(xToScreen(decimatedOverlay.getX(0)), yToScreen(decimatedOverlay.getY(0)));
+        for (int i = 1; i < decimatedOverlay.size(); i++) {
+            line.lineTo(xToScreen(decimatedOverlay.getX(i)), yToScreen(decimatedOverlay.getY(i)));
+        }
+        canvas.setColor(color);
+        canvas.draw(line);
+        return decimatedOverlay.size();
+    }
+
+    // Отрисовка основного ряда
+    private void paintMainGraphics(Graphics2D canvas) {
+        if (summary != null) {
+            pointsDrawn = paintLine(canvas, summary.getOverview(), overviewPyramid, Color.RED);
+            return;
+        }
+        if (isTiled()) {
+            tiledRenderer.draw(canvas, getWidth(), getHeight(), graphicsData, visibleFrom, visibleTo,
+                    dataToScreen, graphicsStroke, Color.RED);
+            pointsDrawn = visibleTo - visibleFrom;
+            return;
+        }
         // Выбрать линию для рисования графика
-        canvas.setStroke(graphicsStroke);
+        // Экранная ломаная строится один раз на каждый размер окна и положение видимой области
+        if (screenGraphics == null) {
+            screenGraphics = isDecimated() ? buildDecimatedGraphics()
+                    : dataToScreen.createTransformedShape(getDataGraphics());
+        }
         // Выбрать цвет линии
         canvas.setColor(Color.RED);
-
-        GeneralPath graphics = new GeneralPath();
-        for (int i = 0; i < graphicsData.length; i++) {
-            // Преобразовать значения (x,y) в точку на экране point
-            Point2D.Double point = xyToPoint(graphicsData[i][0],
-                    graphicsData[i][1]);
-            if (i > 0) {
-                // Не первая итерация цикла - вести линию в точку point
-                graphics.lineTo(point.getX(), point.getY());
-            } else {
-                // Первая итерация цикла - установить начало пути в точку point
-                graphics.moveTo(point.getX(), point.getY());
+        if (isDecimated()) {
+            // Участки прореженной ломаной с пунктиром - каждый со своей фазой,
+            // сплошь закрашенные столбцы - сплошным пером
+            for (int k = 0; k < dashedGraphics.size(); k++) {
+                canvas.setStroke(PathLengths.withPhase(graphicsStroke, dashedPhases[k]));
+                canvas.draw(dashedGraphics.get(k));
             }
+            canvas.setStroke(decimatedStroke);
+        } else {
+            canvas.setStroke(graphicsStroke);
         }
+
         // Отобразить график
-        canvas.draw(graphics);
+        canvas.draw(screenGraphics);
+        pointsDrawn = isDecimated() ? decimatedData.size() : visibleTo - visibleFrom;
     }
 
 
     protected void paintMarkers(Graphics2D canvas) {
+        // Маркеры отбираются от последней точки к первой: из маркеров с центром в одном
+        // пикселе остаётся последний - тот, что при рисовании по порядку оказался бы сверху
+        markerRenderer.begin(getWidth(), getHeight());
+        if (pyramid.isXSorted()) {
+            claimMarkers(pyramid.getLevelCount() - 1, visibleFrom, visibleTo);
+        } else {
+            claimMarkers(visibleFrom, visibleTo);
+        }
 
-        canvas.setStroke(markerStroke);
-
-
-        for (Double[] point : graphicsData) {
+        BufferedImage[] markers = markerRenderer.getSprites(MarkerRenderer.MarkerShape.CROSS,
+                statistics.getClassifier());
+        // Отобранные маркеры переносятся на холст в исходном порядке точек
+        for (int k = markerRenderer.getSelectedCount() - 1; k >= 0; k--) {
+            int i = markerRenderer.getSelected(k);
+            // Класс точки определён при загрузке
+            BufferedImage marker = markers[statistics.getPointClass(i)];
+            markerRenderer.stamp(canvas, marker, xToScreen(graphicsData.getX(i)), yToScreen(graphicsData.getY(i)));
+        }
+        pointsDrawn = markerRenderer.getSelectedCount();
+    }
 
-            double pd = (double)point[1];
-            int p = (int)pd;
-            if(p % 2 == 0){
-                canvas.setColor(Color.BLACK);
-            }
-            else{
-                canvas.setColor(Color.RED);
-            }
-            // Инициализировать эллипс как объект для представления маркера
-            GeneralPath marker = new GeneralPath();
-            Point2D.Double center = xyToPoint(point[0],
-                    point[1]);
 
-            marker.moveTo(center.getX() + 5.5, center.getY());
-            marker.lineTo(center.getX() - 5.5, center.getY());
-            marker.moveTo(center.getX(), center.getY() + 5.5);
-            marker.lineTo(center.getX(), center.getY() - 5.5);
-            marker.moveTo(center.getX() + 5.5, center.getY()+4);
-            marker.lineTo(center.getX() + 5.5, center.getY()-4);
-            marker.moveTo(center.getX() - 5.5, center.getY()+4);
-            marker.lineTo(center.getX() - 5.5, center.getY()-4);
-            marker.moveTo(center.getX() + 4, center.getY() + 5.5);
-            marker.lineTo(center.getX() - 4, center.getY() + 5.5);
-            marker.moveTo(center.getX() + 4, center.getY() - 5.5);
-            marker.lineTo(center.getX() - 4, center.getY() - 5.5);
-//
+    // Отбор маркеров точек [from, to) ряда, упорядоченного по X: целые блоки пирамиды
+    // уровня level и остатки по краям - блоками уровнем ниже, от последних точек к первым
+    private void claimMarkers(int level, int from, int to) {
+        if (from >= to) return;
+        if (level < 0) {
+            claimMarkers(from, to);
+            return;
+        }
+        int size = pyramid.getBlockSize(level);
+        int firstBlock = (from + size - 1) / size;
+        int endBlock = Math.min(to / size, pyramid.getBlockCount(level));
+        if (firstBlock >= endBlock) {
+            claimMarkers(level - 1, from, to);
+            return;
+        }
+        claimMarkers(level - 1, endBlock * size, to);
+        for (int b = endBlock - 1; b >= firstBlock; b--) {
+            claimBlockMarkers(level, b);
+        }
+        claimMarkers(level - 1, from, firstBlock * size);
+    }
 
-            canvas.draw(marker); // Начертить контур маркера
-//            canvas.fill(marker); // Залить внутреннюю область маркера
+    // Блок, все точки которого попадают в уже занятые пиксели, пропускается целиком:
+    // в плотном ряду после заполнения полосы линии отбор не спускается к отдельным
+    // точкам, и его время растёт с числом занятых пикселей, а не точек
+    private void claimBlockMarkers(int level, int b) {
+        int size = pyramid.getBlockSize(level);
+        int start = b * size;
+        int end = start + size - 1;
+        if (markerRenderer.isCovered(xToScreen(graphicsData.getX(start)),
+                yToScreen(graphicsData.getY(pyramid.getMaxIndex(level, b))),
+                xToScreen(graphicsData.getX(end)),
+                yToScreen(graphicsData.getY(pyramid.getMinIndex(level, b))))) {
+            return;
+        }
+        if (level == 0) {
+            claimMarkers(start, end + 1);
+        } else {
+            claimBlockMarkers(level - 1, 2 * b + 1);
+            claimBlockMarkers(level - 1, 2 * b);
         }
     }
 
+    private void claimMarkers(int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            markerRenderer.claim(i, xToScreen(graphicsData.getX(i)), yToScreen(graphicsData.getY(i)));
+        }
+    }
 
     protected void paintNullMarkers(Graphics2D canvas) {
-
-        canvas.setStroke(markerStroke);
-
-
-        canvas.setColor(Color.BLUE);
-
-        for (int i = 1; i < graphicsData.length; i++) {
-            if(Math.signum(graphicsData[i-1][1]) != Math.signum(graphicsData[i][1])) {
-                // Преобразовать значения (x,y) в точку на экране point
-                Double mod_y1 = abs(graphicsData[i-1][1]);
-                Double mod_y2 = abs(graphicsData[i][1]);
-                Double x1 = graphicsData[i-1][0];
-                Double x2 = graphicsData[i][0];
-                Double x0 = (mod_y1*x2+mod_y2*x1)/(mod_y2+mod_y1);
-                Point2D.Double center = xyToPoint(x0,
-                        0);
-
-
-                GeneralPath marker = new GeneralPath();
-
-
-                marker.moveTo(center.getX() + 5.5, center.getY());
-                marker.lineTo(center.getX() - 5.5, center.getY());
-                marker.moveTo(center.getX(), center.getY() + 5.5);
-                marker.lineTo(center.getX(), center.getY() - 5.5);
-                marker.moveTo(center.getX() + 5.5, center.getY() + 4);
-                marker.lineTo(center.getX() + 5.5, center.getY() - 4);
-                marker.moveTo(center.getX() - 5.5, center.getY() + 4);
-                marker.lineTo(center.getX() - 5.5, center.getY() - 4);
-                marker.moveTo(center.getX() + 4, center.getY() + 5.5);
-                marker.lineTo(center.getX() - 4, center.getY() + 5.5);
-                marker.moveTo(center.getX() + 4, center.getY() - 5.5);
-                marker.lineTo(center.getX() - 4, center.getY() - 5.5);
-//
-
-                canvas.draw(marker); // Начертить контур маркера
-//            canvas.fill(marker); // Залить внутреннюю область маркера
-
-            }
-
+        // Пересечения с осью X найдены при загрузке; берутся только попавшие в видимую область.
+        // Пока ряд загружается, пересечения всего файла берутся из сводки
+        boolean fromSummary = summary != null && summary.hasZeroCrossings();
+        int from = fromSummary ? summary.lowerBoundZeroCrossing(minX) : statistics.lowerBoundZeroCrossing(minX);
+        int to = fromSummary ? summary.upperBoundZeroCrossing(maxX) : statistics.upperBoundZeroCrossing(maxX);
+        double centerY = yToScreen(0);
+
+        // Все маркеры нулей одинаковы, поэтому из попавших в один пиксель достаточно любого:
+        // после каждого маркера пересечения до следующего столбца пикселей пропускаются
+        // двоичным поиском (с небольшим запасом на погрешность пересчёта в координаты данных)
+        markerRenderer.begin(getWidth(), getHeight());
+        for (int i = from; i < to; ) {
+            double x = fromSummary ? summary.getZeroCrossing(i) : statistics.getZeroCrossing(i);
+            double screenX = xToScreen(x);
+            markerRenderer.claim(i, screenX, centerY);
+            double nextColumn = minX + (Math.floor(screenX) + 1 - 1e-3) / scale;
+            int next = fromSummary ? summary.lowerBoundZeroCrossing(nextColumn)
+                    : statistics.lowerBoundZeroCrossing(nextColumn);
+            i = Math.max(i + 1, next);
         }
+        BufferedImage marker = markerRenderer.getSprite(MarkerRenderer.MarkerShape.CROSS, Color.BLUE);
+        for (int k = 0; k < markerRenderer.getSelectedCount(); k++) {
+            int i = markerRenderer.getSelected(k);
+            double x = fromSummary ? summary.getZeroCrossing(i) : statistics.getZeroCrossing(i);
+            markerRenderer.stamp(canvas, marker, xToScreen(x), centerY);
+        }
+        pointsDrawn = markerRenderer.getSelectedCount();
     }
 
     
     protected void paintAxis(Graphics2D canvas) {
         // Установить особое начертание для осей
         canvas.setStroke(axisStroke);
-        // Оси рисуются чѐрным цветом
+        // Оси и стрелки рисуются и заливаются чѐрным цветом
         canvas.setColor(Color.BLACK);
-        // Стрелки заливаются чѐрным цветом
-        canvas.setPaint(Color.BLACK);
-        // Подписи к координатным осям делаются специальным шрифтом
-        canvas.setFont(axisFont);
-        // Создать объект контекста отображения текста - для получения характеристик устройства (экрана)
         FontRenderContext context = canvas.getFontRenderContext();
+        double axisX = xToScreen(0);
+        double axisY = yToScreen(0);
 
         if (minX <= 0.0 && maxX >= 0.0) {
-
-
-            canvas.draw(new Line2D.Double(xyToPoint(0, maxY),
-                    xyToPoint(0, minY)));
-            // Стрелка оси Y
-            GeneralPath arrow = new GeneralPath();
-            // Установить начальную точку ломаной точно на верхний конец оси Y
-            Point2D.Double lineEnd = xyToPoint(0, maxY);
-            arrow.moveTo(lineEnd.getX(), lineEnd.getY());
-            // Вести левый "скат" стрелки в точку с относительными координатами (5,20)
-            arrow.lineTo(arrow.getCurrentPoint().getX() + 5,
-                    arrow.getCurrentPoint().getY() + 20);
-            // Вести нижнюю часть стрелки в точку с относительными координатами (-10, 0)
-            arrow.lineTo(arrow.getCurrentPoint().getX() - 10,
-                    arrow.getCurrentPoint().getY());
-            // Замкнуть треугольник стрелки
-            arrow.closePath();
-            canvas.draw(arrow); // Нарисовать стрелку
-            canvas.fill(arrow); // Закрасить стрелку
-
-            Rectangle2D bounds = axisFont.getStringBounds("y", context);
-            Point2D.Double labelPos = xyToPoint(0, maxY);
-            // Вывести надпись в точке с вычисленными координатами
-            canvas.drawString("y", (float) labelPos.getX() + 10,
-                    (float) (labelPos.getY() - bounds.getY()));
+            canvas.draw(new Line2D.Double(axisX, 0, axisX, yToScreen(minY)));
+            // Стрелка оси Y строится один раз с остриём в начале координат и переносится на конец оси
+            canvas.translate(axisX, 0);
+            canvas.draw(Y_ARROW);
+            canvas.fill(Y_ARROW);
+            canvas.translate(-axisX, 0);
+            AxisLabel label = axisLabels.get("y", axisFont, context);
+            canvas.drawGlyphVector(label.glyphs, (float) axisX + 10, (float) -label.bounds.getY());
         }
         // Определить, должна ли быть видна ось X на графике
         if (minY <= 0.0 && maxY >= 0.0) {
+            double right = xToScreen(maxX);
+            canvas.draw(new Line2D.Double(0, axisY, right, axisY));
+            canvas.translate(right, axisY);
+            canvas.draw(X_ARROW);
+            canvas.fill(X_ARROW);
+            canvas.translate(-right, -axisY);
+            AxisLabel label = axisLabels.get("x", axisFont, context);
+            canvas.drawGlyphVector(label.glyphs, (float) (right - label.bounds.getWidth() - 10),
+                    (float) (axisY + label.bounds.getY()));
+        }
+        paintTicks(canvas, context, axisX, axisY);
+    }
 
-            canvas.draw(new Line2D.Double(xyToPoint(minX, 0),
-                    xyToPoint(maxX, 0)));
+    // Деления осей с подписями: шаг - "круглое" число (1, 2 или 5, умноженное на
+    // степень десяти), при котором деления отстоят не меньше чем на MIN_TICK_SPACING
+    // пикселей. Деления идут вдоль осей, а если ось за пределами видимой области -
+    // вдоль ближайшего края
+    private void paintTicks(Graphics2D canvas, FontRenderContext context, double axisX, double axisY) {
+        int width = getWidth();
+        int height = getHeight();
+        double labelHeight = tickFont.getLineMetrics("0", context).getHeight();
+        Path2D.Double ticks = new Path2D.Double();
+
+        // Деления оси X и подписи под ними
+        double xStep = niceStep(maxX - minX, width / MIN_TICK_SPACING);
+        double tickY = Math.max(0, Math.min(height - labelHeight - TICK_LENGTH, axisY));
+        setTickFractionDigits(xStep);
+        double lastRight = Double.NEGATIVE_INFINITY;
+        double first = Math.ceil(minX / xStep);
+        for (int k = 0; k <= MAX_TICKS && (first + k) * xStep <= maxX; k++) {
+            // Сложение с нулём превращает -0.0 в 0.0
+            double value = (first + k) * xStep + 0.0;
+            double x = xToScreen(value);
+            ticks.moveTo(x, tickY - TICK_LENGTH);
+            ticks.lineTo(x, tickY + TICK_LENGTH);
+            // Ноль подписывается у оси Y, подписи не должны наползать друг на друга
+            if (value == 0.0) continue;
+            AxisLabel label = tickLabels.get(formatTick(value), tickFont, context);
+            double left = x - label.bounds.getWidth() / 2;
+            if (left < lastRight + 4 || left < 0 || left + label.bounds.getWidth() > width) continue;
+            canvas.drawGlyphVector(label.glyphs, (float) left,
+                    (float) (tickY + TICK_LENGTH - label.bounds.getY()));
+            lastRight = left + label.bounds.getWidth();
+        }
 
-            GeneralPath arrow = new GeneralPath();
+        // Деления оси Y и подписи слева от них (справа, если слева не помещаются)
+        double yStep = niceStep(maxY - minY, height / MIN_TICK_SPACING);
+        double tickX = Math.max(0, Math.min(width, axisX));
+        setTickFractionDigits(yStep);
+        first = Math.ceil(minY / yStep);
+        for (int k = 0; k <= MAX_TICKS && (first + k) * yStep <= maxY; k++) {
+            double value = (first + k) * yStep + 0.0;
+            double y = yToScreen(value);
+            ticks.moveTo(tickX - TICK_LENGTH, y);
+            ticks.lineTo(tickX + TICK_LENGTH, y);
+            // Верхние подписи не должны заходить на стрелку и за край
+            if (y < labelHeight || y > height - labelHeight) continue;
+            AxisLabel label = tickLabels.get(formatTick(value), tickFont, context);
+            double left = tickX - TICK_LENGTH - 2 - label.bounds.getWidth();
+            if (left < 0) {
+                // Справа от делений подпись может попасть на подписи оси X
+                if (Math.abs(y - tickY) < labelHeight + TICK_LENGTH) continue;
+                left = tickX + TICK_LENGTH + 4;
+            }
+            canvas.drawGlyphVector(label.glyphs, (float) left,
+                    (float) (y - label.bounds.getY() - label.bounds.getHeight() / 2));
+        }
 
-            Point2D.Double lineEnd = xyToPoint(maxX, 0);
-            arrow.moveTo(lineEnd.getX(), lineEnd.getY());
+        canvas.setStroke(tickStroke);
+        canvas.draw(ticks);
+    }
 
-            arrow.lineTo(arrow.getCurrentPoint().getX() - 20,
-                    arrow.getCurrentPoint().getY() - 5);
+    // Шаг делений: наименьшее из чисел 1, 2, 5, умноженных на степень десяти, при
+    // котором на диапазон range приходится не больше maxTicks делений
+    static double niceStep(double range, double maxTicks) {
+        if (!(range > 0) || Double.isInfinite(range)) return 1;
+        double rough = range / Math.max(1, maxTicks);
+        double magnitude = Math.pow(10, Math.floor(Math.log10(rough)));
+        double residual = rough / magnitude;
+        double nice = residual <= 1 ? 1 : residual <= 2 ? 2 : residual <= 5 ? 5 : 10;
+        return nice * magnitude;
+    }
 
-            arrow.lineTo(arrow.getCurrentPoint().getX(),
-                    arrow.getCurrentPoint().getY() + 10);
+    // Число знаков после запятой в подписях - столько, сколько их у шага делений;
+    // очень большие и очень маленькие значения подписываются в экспоненциальной записи
+    private void setTickFractionDigits(double step) {
+        if (step == formattedStep) return;
+        formattedStep = step;
+        if (step >= 1e7 || step < 1e-5) {
+            formatter.applyPattern("0.##E0");
+        } else {
+            int digits = (int) Math.max(0, -Math.floor(Math.log10(step)));
+            formatter.applyPattern("#,##0");
+            formatter.setMinimumFractionDigits(digits);
+            formatter.setMaximumFractionDigits(digits);
+        }
+    }
 
-            arrow.closePath();
-            canvas.draw(arrow); // Нарисовать стрелку
-            canvas.fill(arrow); // Закрасить стрелку
+    private String formatTick(double value) {
+        return value == 0.0 ? "0" : formatter.format(value);
+    }
+
+    // Подпись, разложенная в глифы: раскладка текста - самая дорогая часть вывода
+    // надписи, поэтому разложенные подписи запоминаются и выводятся повторно
+    private static class AxisLabel {
+        final GlyphVector glyphs;
+        final Rectangle2D bounds;
 
-            Rectangle2D bounds = axisFont.getStringBounds("x", context);
-            Point2D.Double labelPos = xyToPoint(maxX, 0);
-            // Вывести надпись в точке с вычисленными координатами
+        AxisLabel(GlyphVector glyphs) {
+            this.glyphs = glyphs;
+            bounds = glyphs.getLogicalBounds();
+        }
+    }
 
-            canvas.drawString("x", (float) (labelPos.getX() -
-                    bounds.getWidth() - 10), (float) (labelPos.getY() + bounds.getY()));
+    // Разложенные подписи одного шрифта по тексту. Подписи, которые дольше всех не
+    // выводились, вытесняются; при смене шрифта или контекста отображения (например,
+    // масштаба экрана) запомненные подписи сбрасываются
+    @SuppressWarnings("serial")
+    private static class AxisLabelCache extends LinkedHashMap<String, AxisLabel> {
+        private static final int MAX_LABELS = 256;
+        private Font font;
+        private FontRenderContext context;
+
+        AxisLabelCache() {
+            super(16, 0.75f, true);
+        }
 
+        AxisLabel get(String text, Font font, FontRenderContext context) {
+            if (!font.equals(this.font) || !context.equals(this.context)) {
+                clear();
+                this.font = font;
+                this.context = context;
+            }
+            AxisLabel label = get(text);
+            if (label == null) {
+                label = new AxisLabel(font.createGlyphVector(context, text));
+                put(text, label);
+            }
+            return label;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<String, AxisLabel> eldest) {
+            return size() > MAX_LABELS;
         }
     }
 
 
+    private static Shape arrow(double x1, double y1, double x2, double y2, double x3, double y3) {
+        Path2D.Double arrow = new Path2D.Double();
+        arrow.moveTo(x1, y1);
+        arrow.lineTo(x2, y2);
+        arrow.lineTo(x3, y3);
+        arrow.closePath();
+        return arrow;
+    }
+
     protected Point2D.Double xyToPoint(double x, double y) {
+        return new Point2D.Double(xToScreen(x), yToScreen(y));
+    }
+
+    // Экранные координаты без создания объекта Point2D - для циклов по точкам
+    protected double xToScreen(double x) {
         // Вычисляем смещение X от самой левой точки (minX)
-        double deltaX = x - minX;
+        return (x - minX) * scale;
+    }
+
+    protected double yToScreen(double y) {
         // Вычисляем смещение Y от точки верхней точки (maxY)
-        double deltaY = maxY - y;
-        return new Point2D.Double(deltaX * scale, deltaY * scale);
+        return (maxY - y) * scale;
     }
 
 
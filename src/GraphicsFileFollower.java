@@ -0,0 +1,115 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+// Слежение за файлом старого формата, в конец которого другой процесс дописывает
+// записи. Позиция чтения всегда стоит на границе записи: читаются только полные
+// записи, дописанные после неё, а неполная последняя запись остаётся в файле до
+// следующего чтения, когда она будет дописана. О записи в файл сообщает
+// WatchService каталога; если файловая система не присылает событий, файл
+// всё равно проверяется не реже раза в POLL_INTERVAL_MILLIS
+public class GraphicsFileFollower implements Closeable {
+
+    // Наибольшее время ожидания события об изменении файла
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+
+    // Наибольшее число записей, читаемых за один вызов readAppended
+    private static final int MAX_READ_RECORDS = 1 << 20;
+
+    private final FileChannel channel;
+    private final WatchService watchService;
+    private final Path fileName;
+
+    // Позиция в файле, с которой начинается следующая непрочитанная запись
+    private long position;
+
+    private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+    // Следить за файлом, первые position байт которого уже прочитаны
+    // (position должна быть кратна размеру записи)
+    public GraphicsFileFollower(File file, long position) throws IOException {
+        if (position < 0 || position % GraphicsFileLoader.RECORD_SIZE != 0) {
+            throw new IllegalArgumentException("Позиция не на границе записи: " + position);
+        }
+        this.position = position;
+        Path path = file.toPath().toAbsolutePath();
+        fileName = path.getFileName();
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    // Прочитать полные записи, дописанные после текущей позиции (не больше
+    // MAX_READ_RECORDS за раз). Возвращает ряд новых точек или null, если полных
+    // записей не дописано
+    public PointSeries readAppended() throws IOException {
+        long size = channel.size();
+        if (size < position) {
+            // Файл укорочен или заменён - дописанные точки уже не продолжают показанный ряд
+            throw new IOException("Файл укорочен до " + size + " байт");
+        }
+        long records = Math.min(MAX_READ_RECORDS, (size - position) / GraphicsFileLoader.RECORD_SIZE);
+        if (records == 0) return null;
+        int length = (int) records * GraphicsFileLoader.RECORD_SIZE;
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
+        }
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Файл укорочен во время чтения");
+            }
+        }
+        buffer.flip();
+        PointSeries appended = new PointSeries((int) records);
+        for (int i = 0; i < records; i++) {
+            appended.add(buffer.getDouble(), buffer.getDouble());
+        }
+        position += length;
+        return appended;
+    }
+
+    // Дождаться изменения файла (но не дольше POLL_INTERVAL_MILLIS)
+    public void awaitChange() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MILLIS);
+        while (true) {
+            long timeout = deadline - System.nanoTime();
+            if (timeout <= 0) return;
+            WatchKey key = watchService.poll(timeout, TimeUnit.NANOSECONDS);
+            if (key == null) return;
+            // События о других файлах каталога пропускаются
+            boolean changed = key.pollEvents().stream().anyMatch(event -> fileName.equals(event.context())
+                    || event.kind() == StandardWatchEventKinds.OVERFLOW);
+            key.reset();
+            if (changed) return;
+        }
+    }
+
+    public void close() throws IOException {
+        try {
+            watchService.close();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,333 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Загрузчик файла с графиком. Файл старого формата - это последовательность пар
+// (x, y), каждая координата записана как double в порядке байтов big-endian;
+// файл индексированного формата (IndexedPointFile) распознаётся по заголовку.
+// Файл читается порциями (readChunk), так что загрузку можно вести в фоновом
+// потоке, показывать уже прочитанные точки и прерывать в любой момент.
+// Точки можно хранить компактно (PointSeries.Storage); тогда они читаются через
+// промежуточные массивы, а точные значения ряда старого формата берутся из файла.
+// Завершённая загрузка отмечается в PlotMetrics и событием JFR graphics.Load
+public class GraphicsFileLoader implements Closeable {
+
+    // Размер одной записи (пары координат) в байтах
+    public static final int RECORD_SIZE = 2 * Double.BYTES;
+
+    // Максимальное число точек, помещающееся в массив Java
+    public static final int MAX_POINTS = Integer.MAX_VALUE - 8;
+
+    // Размер сегмента, отображаемого в память за один раз (кратен размеру записи,
+    // поэтому запись никогда не разрывается между сегментами)
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    // Число double, декодируемых из буфера за одну операцию
+    private static final int BLOCK_DOUBLES = 8192;
+
+    // Первая порция невелика, чтобы начало графика появилось сразу;
+    // каждая следующая вдвое больше предыдущей, но не больше MAX_CHUNK_POINTS
+    private static final int FIRST_CHUNK_POINTS = 1 << 16;
+    private static final int MAX_CHUNK_POINTS = 1 << 22;
+
+    private final FileChannel channel;
+    private final File file;
+    private final long fileSize;
+    private final long truncatedBytes;
+    private final int count;
+    private final PointSeries.Storage storage;
+    // Массивы, в которые декодируются точки: при хранении double - массивы ряда,
+    // иначе промежуточные, откуда точки переносятся в ряд целыми блоками
+    private final double[] xs;
+    private final double[] ys;
+    private final PointSeries series;
+    private final double[] block = new double[BLOCK_DOUBLES];
+
+    // Файл индексированного формата (null - старый формат) и следующая его порция
+    private final IndexedPointFile indexed;
+    private int nextChunk;
+
+    // Отображение текущего сегмента файла и его начало
+    private DoubleBuffer segment;
+    private long segmentEnd;
+
+    // Число декодированных точек и число точек, уже записанных в ряд
+    private int decoded;
+    private int loaded;
+    private int chunkPoints = FIRST_CHUNK_POINTS;
+
+    // Начало загрузки для замера её скорости
+    private final long startNanos = System.nanoTime();
+    private final GraphicsLoadEvent loadEvent = new GraphicsLoadEvent();
+
+    // Открыть файл и выделить память под все его точки
+    public GraphicsFileLoader(File file) throws IOException {
+        this(file, PointSeries.Storage.DOUBLE);
+    }
+
+    public GraphicsFileLoader(File file, PointSeries.Storage storage) throws IOException {
+        loadEvent.begin();
+        this.file = file;
+        this.storage = storage;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            fileSize = size;
+            long count;
+            if (IndexedPointFile.isIndexed(channel)) {
+                indexed = new IndexedPointFile(channel);
+                count = indexed.getPointCount();
+                truncatedBytes = 0;
+            } else {
+                indexed = null;
+                count = size / RECORD_SIZE;
+                truncatedBytes = size % RECORD_SIZE;
+            }
+            if (count > MAX_POINTS) {
+                throw new IOException("Слишком много точек в файле: " + count);
+            }
+            this.count = (int) count;
+            // Ряд пуст, пока владелец не откроет прочитанные точки через setSize
+            if (storage == PointSeries.Storage.DOUBLE) {
+                xs = new double[this.count];
+                ys = new double[this.count];
+                series = new PointSeries(xs, ys, 0);
+            } else {
+                // Промежуточные массивы вмещают неполный блок и порцию индексированного файла
+                int chunk = indexed != null ? indexed.getMaxChunkPoints() : FIRST_CHUNK_POINTS;
+                int staging = (int) Math.min(count, (long) chunk + PointSeries.BLOCK_SIZE);
+                xs = new double[staging];
+                ys = new double[staging];
+                series = new PointSeries(this.count, storage);
+                if (indexed == null) {
+                    series.setExactValues(new MappedPoints(channel, this.count));
+                }
+            }
+            if (isDone()) {
+                loadFinished();
+            }
+        } catch (IOException | RuntimeException | Error ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    // Прочитать точки файла с X из диапазона [fromX, toX]. У индексированного файла
+    // читаются только порции, пересекающиеся с диапазоном, старый файл читается целиком
+    public static Result load(File file, double fromX, double toX) throws IOException {
+        PointSeries source;
+        long truncatedBytes;
+        try (GraphicsFileLoader loader = new GraphicsFileLoader(file)) {
+            truncatedBytes = loader.getTruncatedBytes();
+            if (loader.indexed != null) {
+                source = new PointSeries();
+                loader.indexed.readRange(fromX, toX, source);
+            } else {
+                while (!loader.isDone()) {
+                    loader.readChunk();
+                }
+                source = loader.getSeries();
+                source.setSize(loader.getLoadedCount());
+            }
+        }
+        // Порции на краях диапазона содержат и точки за его пределами
+        PointSeries result = new PointSeries();
+        for (int i = 0; i < source.size(); i++) {
+            double x = source.getX(i);
+            if (x >= fromX && x <= toX) {
+                result.add(x, source.getY(i));
+            }
+        }
+        return new Result(result, truncatedBytes);
+    }
+
+    // Прочитать все точки файла в ряд с примитивным хранением
+    public static Result load(File file) throws IOException {
+        return load(file, PointSeries.Storage.DOUBLE);
+    }
+
+    public static Result load(File file, PointSeries.Storage storage) throws IOException {
+        try (GraphicsFileLoader loader = new GraphicsFileLoader(file, storage)) {
+            while (!loader.isDone()) {
+                loader.readChunk();
+            }
+            loader.getSeries().setSize(loader.getLoadedCount());
+            return new Result(loader.getSeries(), loader.getTruncatedBytes());
+        }
+    }
+
+    // Ряд, который заполняет загрузчик. Загрузчик только пишет в ряд; сколько
+    // точек видно в ряду, решает владелец ряда вызовом setSize (обычно в потоке
+    // обработки событий после того, как узнал о новой порции)
+    public PointSeries getSeries() {
+        return series;
+    }
+
+    public int getPointCount() {
+        return count;
+    }
+
+    public int getLoadedCount() {
+        return loaded;
+    }
+
+    public boolean isDone() {
+        return loaded == count;
+    }
+
+    // Число байтов в конце файла, не составляющих полную запись (0 - файл цел)
+    public long getTruncatedBytes() {
+        return truncatedBytes;
+    }
+
+    // Файл в индексированном формате (его нельзя дописывать, поэтому за ним не следят)
+    public boolean isIndexed() {
+        return indexed != null;
+    }
+
+    // Прочитать следующую порцию точек; возвращает общее число прочитанных точек
+    public int readChunk() throws IOException {
+        boolean compact = storage != PointSeries.Storage.DOUBLE;
+        int end = (int) Math.min(count, (long) decoded + chunkPoints);
+        chunkPoints = Math.min(MAX_CHUNK_POINTS, chunkPoints * 2);
+        // Порции индексированного файла читаются целиком
+        while (indexed != null && decoded < end) {
+            if (compact && xs.length - (decoded - loaded) < indexed.getChunkPoints(nextChunk)) {
+                writeDecoded(false);
+            }
+            decoded += indexed.readChunk(nextChunk++, xs, ys, compact ? decoded - loaded : decoded);
+        }
+        while (decoded < end) {
+            if (segment == null || !segment.hasRemaining()) {
+                mapNextSegment();
+            }
+            if (compact && decoded - loaded == xs.length) {
+                writeDecoded(false);
+            }
+            int at = compact ? decoded - loaded : decoded;
+            int n = Math.min(Math.min(block.length, segment.remaining()), 2 * Math.min(end - decoded, xs.length - at));
+            segment.get(block, 0, n);
+            // Разложить пары (x, y) по двум массивам
+            for (int j = 0; j < n; j += 2) {
+                xs[at] = block[j];
+                ys[at] = block[j + 1];
+                at++;
+            }
+            decoded += n / 2;
+        }
+        if (compact) {
+            writeDecoded(decoded == count);
+        } else {
+            loaded = decoded;
+        }
+        if (isDone()) {
+            loadFinished();
+        }
+        return loaded;
+    }
+
+    // Перенести декодированные точки из промежуточных массивов в ряд. Ряд
+    // заполняется целыми блоками, поэтому неполный блок остаётся в массивах до
+    // следующей порции, если это не последние точки файла
+    private void writeDecoded(boolean last) {
+        int pending = decoded - loaded;
+        int length = last ? pending : pending - pending % PointSeries.BLOCK_SIZE;
+        series.write(loaded, xs, ys, 0, length);
+        System.arraycopy(xs, length, xs, 0, pending - length);
+        System.arraycopy(ys, length, ys, 0, pending - length);
+        loaded += length;
+    }
+
+    // Отметить скорость завершённой загрузки
+    private void loadFinished() {
+        long nanos = System.nanoTime() - startNanos;
+        PlotMetrics.getInstance().fileLoaded(fileSize, loaded, nanos);
+        loadEvent.end();
+        if (loadEvent.shouldCommit()) {
+            loadEvent.path = file.getPath();
+            loadEvent.bytes = fileSize;
+            loadEvent.points = loaded;
+            loadEvent.megabytesPerSecond = PlotMetrics.megabytesPerSecond(fileSize, nanos);
+            loadEvent.pointsPerSecond = PlotMetrics.perSecond(loaded, nanos);
+            loadEvent.commit();
+        }
+    }
+
+    // Файлы больше 2 ГБ нельзя отобразить одним буфером - читаем посегментно
+    private void mapNextSegment() throws IOException {
+        long dataSize = (long) count * RECORD_SIZE;
+        long position = segmentEnd;
+        long length = Math.min(SEGMENT_SIZE, dataSize - position);
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length)
+                .order(ByteOrder.BIG_ENDIAN).asDoubleBuffer();
+        segmentEnd = position + length;
+    }
+
+    public void close() throws IOException {
+        segment = null;
+        channel.close();
+    }
+
+    // Точные координаты точек файла старого формата, отображённого в память.
+    // Отображение остаётся действительным и после закрытия канала
+    private static class MappedPoints implements PointSeries.ExactValues {
+
+        // Число double в сегменте отображения
+        private static final int SEGMENT_DOUBLES = (int) (SEGMENT_SIZE / Double.BYTES);
+
+        private final DoubleBuffer[] segments;
+        private final int count;
+
+        MappedPoints(FileChannel channel, int count) throws IOException {
+            this.count = count;
+            long dataSize = (long) count * RECORD_SIZE;
+            segments = new DoubleBuffer[(int) ((dataSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int k = 0; k < segments.length; k++) {
+                long position = k * SEGMENT_SIZE;
+                segments[k] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(SEGMENT_SIZE, dataSize - position)).order(ByteOrder.BIG_ENDIAN).asDoubleBuffer();
+            }
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public double getX(int i) {
+            return get(2L * i);
+        }
+
+        public double getY(int i) {
+            return get(2L * i + 1);
+        }
+
+        // Абсолютное чтение не меняет положение буфера, поэтому безопасно из любого потока
+        private double get(long index) {
+            return segments[(int) (index / SEGMENT_DOUBLES)].get((int) (index % SEGMENT_DOUBLES));
+        }
+    }
+
+    // Результат загрузки: ряд точек и размер неполной последней записи
+    public static class Result {
+        private final PointSeries series;
+        private final long truncatedBytes;
+
+        Result(PointSeries series, long truncatedBytes) {
+            this.series = series;
+            this.truncatedBytes = truncatedBytes;
+        }
+
+        public PointSeries getSeries() {
+            return series;
+        }
+
+        // Число байтов в конце файла, не составляющих полную запись (0 - файл цел)
+        public long getTruncatedBytes() {
+            return truncatedBytes;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Событие JFR: загрузка файла с графиком (длительность - от открытия до последней точки)
+@Name("graphics.Load")
+@Label("Graphics File Load")
+@Category("Graphics")
+@Description("Чтение файла с графиком")
+public class GraphicsLoadEvent extends Event {
+
+    @Label("File")
+    String path;
+
+    @Label("Size")
+    @DataAmount
+    long bytes;
+
+    @Label("Points")
+    long points;
+
+    @Label("Megabytes per Second")
+    double megabytesPerSecond;
+
+    @Label("Points per Second")
+    double pointsPerSecond;
+}
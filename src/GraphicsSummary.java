@@ -0,0 +1,242 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+// Сводка файла с графиком, сохраняемая рядом с ним (файл с суффиксом .summary):
+// число точек, границы, пересечения с осью X и обзор - ряд, прореженный до
+// OVERVIEW_COLUMNS столбцов. При повторном открытии большого файла обзор
+// показывается сразу, пока точки файла загружаются. Сводка привязана к размеру,
+// времени изменения и хешу выборки содержимого файла; сводка изменённого файла
+// считается устаревшей и после загрузки записывается заново
+public class GraphicsSummary {
+
+    // Сводка записывается для файлов не меньше чем с таким числом точек
+    public static final int MIN_POINTS = 1 << 20;
+
+    // Ширина обзора в столбцах (на каждый столбец - до четырёх точек)
+    public static final int OVERVIEW_COLUMNS = 4096;
+
+    // Больше пересечений с осью не сохраняется (у шумного ряда их может быть
+    // столько же, сколько точек, и сводка перестала бы быть маленькой)
+    public static final int MAX_ZERO_CROSSINGS = 1 << 20;
+
+    private static final int MAGIC = 0x4753554D;
+    private static final short VERSION = 1;
+    private static final String SUFFIX = ".summary";
+
+    // Размер заголовка: признак, версия, размер, время изменения и хеш файла,
+    // число точек, границы и число пересечений и точек обзора
+    private static final int HEADER_SIZE = 4 + 2 + 3 * 8 + 4 + 4 * 8 + 4 + 4;
+
+    // Хеш считается по SAMPLE_COUNT участкам файла по SAMPLE_BYTES байт, равномерно
+    // расставленным от начала до конца: чтение всего файла заняло бы столько же,
+    // сколько его загрузка
+    private static final int SAMPLE_COUNT = 64;
+    private static final int SAMPLE_BYTES = 4096;
+
+    private final int pointCount;
+    private final double minX;
+    private final double maxX;
+    private final double minY;
+    private final double maxY;
+    // Координаты X пересечений с осью по возрастанию (null - не сохранены)
+    private final double[] zeroCrossings;
+    private final PointSeries overview;
+
+    public GraphicsSummary(int pointCount, double minX, double maxX, double minY, double maxY,
+                           double[] zeroCrossings, PointSeries overview) {
+        this.pointCount = pointCount;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.zeroCrossings = zeroCrossings;
+        this.overview = overview;
+    }
+
+    public static File getSummaryFile(File data) {
+        return new File(data.getPath() + SUFFIX);
+    }
+
+    // Прочитать сводку файла data, в котором pointCount точек; null - сводки нет,
+    // она устарела или повреждена
+    public static GraphicsSummary read(File data, int pointCount) {
+        File file = getSummaryFile(data);
+        if (!file.isFile()) return null;
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel dataChannel = FileChannel.open(data.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(in.size(), Integer.MAX_VALUE - 8));
+            while (buffer.hasRemaining()) {
+                if (in.read(buffer) < 0) return null;
+            }
+            buffer.flip().order(ByteOrder.BIG_ENDIAN);
+            if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) return null;
+            long size = dataChannel.size();
+            if (buffer.getLong() != size || buffer.getLong() != data.lastModified()
+                    || buffer.getLong() != contentHash(dataChannel, size)) return null;
+            if (buffer.getInt() != pointCount) return null;
+            double minX = buffer.getDouble();
+            double maxX = buffer.getDouble();
+            double minY = buffer.getDouble();
+            double maxY = buffer.getDouble();
+            int crossingCount = buffer.getInt();
+            double[] zeroCrossings = null;
+            if (crossingCount >= 0) {
+                zeroCrossings = new double[checkCount(crossingCount, buffer, 1)];
+                buffer.asDoubleBuffer().get(zeroCrossings);
+                buffer.position(buffer.position() + crossingCount * Double.BYTES);
+            }
+            int overviewCount = checkCount(buffer.getInt(), buffer, 2);
+            double[] xs = new double[overviewCount];
+            double[] ys = new double[overviewCount];
+            for (int i = 0; i < overviewCount; i++) {
+                xs[i] = buffer.getDouble();
+                ys[i] = buffer.getDouble();
+            }
+            return new GraphicsSummary(pointCount, minX, maxX, minY, maxY, zeroCrossings,
+                    new PointSeries(xs, ys, overviewCount));
+        } catch (IOException | BufferUnderflowException ex) {
+            return null;
+        }
+    }
+
+    // Число элементов, по doubles на каждый, должно уместиться в остатке буфера
+    private static int checkCount(int count, ByteBuffer buffer, int doubles) {
+        if (count < 0 || (long) count * doubles * Double.BYTES > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    // Записать сводку рядом с файлом data. Сводка сначала пишется во временный файл,
+    // поэтому прерванная запись не оставляет повреждённой сводки
+    public void write(File data) throws IOException {
+        int crossingCount = zeroCrossings != null ? zeroCrossings.length : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (crossingCount + 2 * overview.size()) * Double.BYTES)
+                .order(ByteOrder.BIG_ENDIAN);
+        try (FileChannel dataChannel = FileChannel.open(data.toPath(), StandardOpenOption.READ)) {
+            long size = dataChannel.size();
+            buffer.putInt(MAGIC).putShort(VERSION);
+            buffer.putLong(size).putLong(data.lastModified()).putLong(contentHash(dataChannel, size));
+        }
+        buffer.putInt(pointCount);
+        buffer.putDouble(minX).putDouble(maxX).putDouble(minY).putDouble(maxY);
+        buffer.putInt(zeroCrossings != null ? crossingCount : -1);
+        for (int i = 0; i < crossingCount; i++) {
+            buffer.putDouble(zeroCrossings[i]);
+        }
+        buffer.putInt(overview.size());
+        for (int i = 0; i < overview.size(); i++) {
+            buffer.putDouble(overview.getX(i)).putDouble(overview.getY(i));
+        }
+        buffer.flip();
+
+        File file = getSummaryFile(data);
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            Files.deleteIfExists(temporary.toPath());
+            throw ex;
+        }
+    }
+
+    // Хеш выборки содержимого файла: первого и последнего участков и участков между ними
+    private static long contentHash(FileChannel channel, long size) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer sample = ByteBuffer.allocate(SAMPLE_BYTES);
+        long last = Math.max(0, size - SAMPLE_BYTES);
+        for (int k = 0; k < SAMPLE_COUNT; k++) {
+            long position = last * k / (SAMPLE_COUNT - 1);
+            sample.clear();
+            // Файл короче участка читается до конца
+            while (sample.hasRemaining()) {
+                if (channel.read(sample, position + sample.position()) < 0) break;
+            }
+            sample.flip();
+            crc.update(sample);
+        }
+        return crc.getValue();
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    // Ряд, прореженный до OVERVIEW_COLUMNS столбцов по всей ширине графика
+    public PointSeries getOverview() {
+        return overview;
+    }
+
+    public boolean hasZeroCrossings() {
+        return zeroCrossings != null;
+    }
+
+    public int getZeroCrossingCount() {
+        return zeroCrossings != null ? zeroCrossings.length : 0;
+    }
+
+    public double getZeroCrossing(int i) {
+        return zeroCrossings[i];
+    }
+
+    // Индекс первого пересечения с X >= x
+    public int lowerBoundZeroCrossing(double x) {
+        int low = 0;
+        int high = getZeroCrossingCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (zeroCrossings[middle] < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Индекс первого пересечения с X > x
+    public int upperBoundZeroCrossing(double x) {
+        int low = 0;
+        int high = getZeroCrossingCount();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (zeroCrossings[middle] <= x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Чтение файла с графиком в индексированном формате. В отличие от старого формата
+// (пары double без заголовка) файл начинается с заголовка, по которому сразу известны
+// число точек, границы и упорядоченность по X, за ним следует оглавление порций с
+// границами каждой порции. Поэтому можно прочитать только порции, попадающие в
+// нужный диапазон X. Координаты порции хранятся по столбцам, каждый столбец - в
+// своей кодировке: double, float (с потерей точности), десятичные числа с
+// фиксированным числом знаков после запятой как разности соседних значений или
+// вторые разности двоичных представлений double (для равномерных сеток X, шаг
+// которых не записывается конечной десятичной дробью). Разности записываются
+// переменным числом байтов.
+//
+// Заголовок (HEADER_SIZE байт, порядок big-endian, как и в старом формате):
+//   int магическое число MAGIC, short версия, short флаги (FLAG_X_SORTED),
+//   long число точек, int число порций, int наибольшее число точек в порции,
+//   double minX, maxX, minY, maxY, long резерв.
+// Оглавление - по INDEX_ENTRY_SIZE байт на порцию:
+//   long смещение порции в файле, int число точек, int размер порции в байтах,
+//   double minX, maxX, minY, maxY.
+// Порция: byte кодировка X, byte число знаков X, byte кодировка Y, byte число знаков Y,
+//   столбец X, столбец Y.
+//
+// Экземпляр не потокобезопасен: буфер чтения порций общий
+public class IndexedPointFile {
+
+    // "GPIX"
+    public static final int MAGIC = 0x47504958;
+    public static final short VERSION = 1;
+
+    // Флаг заголовка: точки упорядочены по X
+    public static final short FLAG_X_SORTED = 1;
+
+    public static final int HEADER_SIZE = 64;
+    public static final int INDEX_ENTRY_SIZE = 48;
+    public static final int CHUNK_HEADER_SIZE = 4;
+
+    // Кодировки столбцов порции
+    public static final byte ENCODING_DOUBLE = 0;
+    public static final byte ENCODING_FLOAT = 1;
+    public static final byte ENCODING_DECIMAL = 2;
+    public static final byte ENCODING_DOUBLE_DELTA = 3;
+
+    // Наибольшее число знаков после запятой в кодировке ENCODING_DECIMAL
+    public static final int MAX_DECIMAL_SCALE = 9;
+
+    static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9
+    };
+
+    private final FileChannel channel;
+    private final long pointCount;
+    private final boolean xSorted;
+    private final int maxChunkPoints;
+    private final double minX;
+    private final double maxX;
+    private final double minY;
+    private final double maxY;
+
+    // Оглавление порций
+    private final long[] chunkOffsets;
+    private final int[] chunkPoints;
+    private final int[] chunkSizes;
+    private final double[] chunkMinX;
+    private final double[] chunkMaxX;
+    private final double[] chunkMinY;
+    private final double[] chunkMaxY;
+
+    // Номер первой точки каждой порции (и общее число точек в последнем элементе)
+    private final long[] chunkStarts;
+
+    private ByteBuffer chunkBuffer = ByteBuffer.allocate(0);
+    private float[] floats = new float[0];
+
+    // Прочитать заголовок и оглавление файла; канал остаётся во владении вызывающего
+    public IndexedPointFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = readFully(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Файл не в индексированном формате");
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("Неподдерживаемая версия формата: " + version);
+        }
+        xSorted = (header.getShort() & FLAG_X_SORTED) != 0;
+        pointCount = header.getLong();
+        int chunkCount = header.getInt();
+        maxChunkPoints = header.getInt();
+        minX = header.getDouble();
+        maxX = header.getDouble();
+        minY = header.getDouble();
+        maxY = header.getDouble();
+        if (chunkCount < 0 || maxChunkPoints < 0 || pointCount < 0) {
+            throw new IOException("Повреждён заголовок файла");
+        }
+
+        chunkOffsets = new long[chunkCount];
+        chunkPoints = new int[chunkCount];
+        chunkSizes = new int[chunkCount];
+        chunkMinX = new double[chunkCount];
+        chunkMaxX = new double[chunkCount];
+        chunkMinY = new double[chunkCount];
+        chunkMaxY = new double[chunkCount];
+        chunkStarts = new long[chunkCount + 1];
+        ByteBuffer index = readFully(HEADER_SIZE, (long) chunkCount * INDEX_ENTRY_SIZE);
+        long fileSize = channel.size();
+        for (int k = 0; k < chunkCount; k++) {
+            chunkOffsets[k] = index.getLong();
+            chunkPoints[k] = index.getInt();
+            chunkSizes[k] = index.getInt();
+            chunkMinX[k] = index.getDouble();
+            chunkMaxX[k] = index.getDouble();
+            chunkMinY[k] = index.getDouble();
+            chunkMaxY[k] = index.getDouble();
+            if (chunkPoints[k] < 0 || chunkPoints[k] > maxChunkPoints || chunkSizes[k] < CHUNK_HEADER_SIZE
+                    || chunkOffsets[k] < 0 || chunkOffsets[k] + chunkSizes[k] > fileSize) {
+                throw new IOException("Повреждено оглавление файла (порция " + k + ")");
+            }
+            chunkStarts[k + 1] = chunkStarts[k] + chunkPoints[k];
+        }
+        if (chunkStarts[chunkCount] != pointCount) {
+            throw new IOException("Число точек в оглавлении не совпадает с заголовком");
+        }
+    }
+
+    // Начинается ли файл с заголовка индексированного формата
+    public static boolean isIndexed(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_SIZE) return false;
+        ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+        while (magic.hasRemaining()) {
+            if (channel.read(magic, magic.position()) < 0) return false;
+        }
+        return magic.getInt(0) == MAGIC;
+    }
+
+    public long getPointCount() {
+        return pointCount;
+    }
+
+    // Наибольшее число точек в одной порции
+    public int getMaxChunkPoints() {
+        return maxChunkPoints;
+    }
+
+    public boolean isXSorted() {
+        return xSorted;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public int getChunkCount() {
+        return chunkPoints.length;
+    }
+
+    public int getChunkPoints(int chunk) {
+        return chunkPoints[chunk];
+    }
+
+    // Номер первой точки порции в файле
+    public long getChunkStart(int chunk) {
+        return chunkStarts[chunk];
+    }
+
+    public double getChunkMinX(int chunk) {
+        return chunkMinX[chunk];
+    }
+
+    public double getChunkMaxX(int chunk) {
+        return chunkMaxX[chunk];
+    }
+
+    public double getChunkMinY(int chunk) {
+        return chunkMinY[chunk];
+    }
+
+    public double getChunkMaxY(int chunk) {
+        return chunkMaxY[chunk];
+    }
+
+    // Прочитать точки порции в массивы xs, ys начиная с позиции offset;
+    // возвращает число прочитанных точек
+    public int readChunk(int chunk, double[] xs, double[] ys, int offset) throws IOException {
+        int count = chunkPoints[chunk];
+        int size = chunkSizes[chunk];
+        if (chunkBuffer.capacity() < size) {
+            chunkBuffer = ByteBuffer.allocate(Math.max(size, chunkBuffer.capacity() + (chunkBuffer.capacity() >> 1)));
+        }
+        chunkBuffer.clear().limit(size);
+        long position = chunkOffsets[chunk];
+        while (chunkBuffer.hasRemaining()) {
+            if (channel.read(chunkBuffer, position + chunkBuffer.position()) < 0) {
+                throw new IOException("Файл обрывается внутри порции " + chunk);
+            }
+        }
+        chunkBuffer.flip().order(ByteOrder.BIG_ENDIAN);
+        byte xEncoding = chunkBuffer.get();
+        byte xScale = chunkBuffer.get();
+        byte yEncoding = chunkBuffer.get();
+        byte yScale = chunkBuffer.get();
+        try {
+            decodeColumn(xEncoding, xScale, xs, offset, count);
+            decodeColumn(yEncoding, yScale, ys, offset, count);
+        } catch (RuntimeException ex) {
+            throw new IOException("Повреждена порция " + chunk, ex);
+        }
+        return count;
+    }
+
+    // Дописать в ряд out точки всех порций, которые пересекаются с диапазоном [fromX, toX].
+    // Для упорядоченного по X файла это непрерывный участок графика
+    public void readRange(double fromX, double toX, PointSeries out) throws IOException {
+        double[] xs = null;
+        double[] ys = null;
+        for (int k = 0; k < getChunkCount(); k++) {
+            if (chunkMaxX[k] < fromX || chunkMinX[k] > toX) continue;
+            if (xs == null) {
+                xs = new double[maxChunkPoints];
+                ys = new double[maxChunkPoints];
+            }
+            int count = readChunk(k, xs, ys, 0);
+            out.addAll(xs, ys, 0, count);
+        }
+    }
+
+    private void decodeColumn(byte encoding, byte scale, double[] values, int offset, int count) {
+        switch (encoding) {
+            case ENCODING_DOUBLE:
+                chunkBuffer.asDoubleBuffer().get(values, offset, count);
+                chunkBuffer.position(chunkBuffer.position() + count * Double.BYTES);
+                break;
+            case ENCODING_FLOAT:
+                if (floats.length < count) {
+                    floats = new float[count];
+                }
+                chunkBuffer.asFloatBuffer().get(floats, 0, count);
+                chunkBuffer.position(chunkBuffer.position() + count * Float.BYTES);
+                for (int i = 0; i < count; i++) {
+                    values[offset + i] = floats[i];
+                }
+                break;
+            case ENCODING_DECIMAL:
+                if (scale < 0 || scale > MAX_DECIMAL_SCALE) {
+                    throw new IllegalArgumentException("Недопустимое число знаков: " + scale);
+                }
+                double power = POWERS_OF_TEN[scale];
+                long mantissa = 0;
+                for (int i = 0; i < count; i++) {
+                    mantissa += readVarLong();
+                    values[offset + i] = mantissa / power;
+                }
+                break;
+            case ENCODING_DOUBLE_DELTA:
+                long bits = 0;
+                long delta = 0;
+                for (int i = 0; i < count; i++) {
+                    delta += readVarLong();
+                    bits += delta;
+                    values[offset + i] = Double.longBitsToDouble(bits);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Неизвестная кодировка столбца: " + encoding);
+        }
+    }
+
+    // Число со знаком в зигзаг-кодировке, по 7 бит в байте, младшие биты первыми
+    private long readVarLong() {
+        long raw = 0;
+        int shift = 0;
+        while (true) {
+            byte b = chunkBuffer.get();
+            raw |= (long) (b & 0x7F) << shift;
+            if (b >= 0) break;
+            shift += 7;
+            if (shift > 63) {
+                throw new IllegalArgumentException("Слишком длинное число");
+            }
+        }
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+
+    private ByteBuffer readFully(long position, long length) throws IOException {
+        if (length > Integer.MAX_VALUE || position + length > channel.size()) {
+            throw new IOException("Файл обрывается внутри заголовка или оглавления");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Файл обрывается внутри заголовка или оглавления");
+            }
+        }
+        return buffer.flip().order(ByteOrder.BIG_ENDIAN);
+    }
+}
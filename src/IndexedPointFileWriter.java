@@ -0,0 +1,293 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+// Запись ряда точек в индексированном формате (см. IndexedPointFile) и
+// преобразование файлов старого формата. Для каждого столбца каждой порции
+// выбирается самая компактная из кодировок без потерь: десятичные разности (если
+// все значения столбца точно записываются с не более чем MAX_DECIMAL_SCALE знаками
+// после запятой), вторые разности двоичных представлений или просто double.
+// Кодировка float включается явно, так как теряет точность
+public class IndexedPointFileWriter {
+
+    // Число точек в порции по умолчанию
+    public static final int DEFAULT_CHUNK_POINTS = 1 << 16;
+
+    // Десятичные мантиссы и их разности должны оставаться точными целыми в double
+    private static final double MAX_MANTISSA = 1L << 53;
+
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToRawLongBits(-0.0);
+
+    private final int chunkPoints;
+    private final boolean allowFloat;
+
+    // Буфер одной порции, мантиссы десятичной кодировки и двоичные представления столбца
+    private ByteBuffer chunk = ByteBuffer.allocate(0);
+    private long[] mantissas = new long[0];
+    private long[] bits = new long[0];
+
+    // allowFloat - хранить столбцы как float, если десятичная кодировка невозможна
+    // или длиннее (точность координат снижается до float)
+    public IndexedPointFileWriter(int chunkPoints, boolean allowFloat) {
+        if (chunkPoints <= 0) {
+            throw new IllegalArgumentException("Недопустимое число точек в порции: " + chunkPoints);
+        }
+        this.chunkPoints = chunkPoints;
+        this.allowFloat = allowFloat;
+    }
+
+    // Записать ряд в файл output
+    public void write(PointSeries series, File output) throws IOException {
+        int size = series.size();
+        int chunkCount = (size + chunkPoints - 1) / chunkPoints;
+        double[] xs = new double[Math.min(size, chunkPoints)];
+        double[] ys = new double[xs.length];
+
+        try (FileChannel channel = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer index = ByteBuffer.allocate(chunkCount * IndexedPointFile.INDEX_ENTRY_SIZE)
+                    .order(ByteOrder.BIG_ENDIAN);
+            long position = IndexedPointFile.HEADER_SIZE + (long) index.capacity();
+            boolean xSorted = true;
+            double minX = Double.NaN;
+            double maxX = Double.NaN;
+            double minY = Double.NaN;
+            double maxY = Double.NaN;
+
+            for (int k = 0; k < chunkCount; k++) {
+                int from = k * chunkPoints;
+                int count = Math.min(chunkPoints, size - from);
+                double chunkMinX = Double.POSITIVE_INFINITY;
+                double chunkMaxX = Double.NEGATIVE_INFINITY;
+                double chunkMinY = Double.POSITIVE_INFINITY;
+                double chunkMaxY = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < count; i++) {
+                    double x = series.getX(from + i);
+                    double y = series.getY(from + i);
+                    xs[i] = x;
+                    ys[i] = y;
+                    chunkMinX = Math.min(chunkMinX, x);
+                    chunkMaxX = Math.max(chunkMaxX, x);
+                    chunkMinY = Math.min(chunkMinY, y);
+                    chunkMaxY = Math.max(chunkMaxY, y);
+                    if (from + i > 0 && x < series.getX(from + i - 1)) {
+                        xSorted = false;
+                    }
+                }
+                minX = k == 0 ? chunkMinX : Math.min(minX, chunkMinX);
+                maxX = k == 0 ? chunkMaxX : Math.max(maxX, chunkMaxX);
+                minY = k == 0 ? chunkMinY : Math.min(minY, chunkMinY);
+                maxY = k == 0 ? chunkMaxY : Math.max(maxY, chunkMaxY);
+
+                encodeChunk(xs, ys, count);
+                int chunkSize = chunk.remaining();
+                writeFully(channel, chunk, position);
+
+                index.putLong(position);
+                index.putInt(count);
+                index.putInt(chunkSize);
+                index.putDouble(chunkMinX);
+                index.putDouble(chunkMaxX);
+                index.putDouble(chunkMinY);
+                index.putDouble(chunkMaxY);
+                position += chunkSize;
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(IndexedPointFile.HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(IndexedPointFile.MAGIC);
+            header.putShort(IndexedPointFile.VERSION);
+            header.putShort(xSorted ? IndexedPointFile.FLAG_X_SORTED : 0);
+            header.putLong(size);
+            header.putInt(chunkCount);
+            header.putInt(xs.length);
+            header.putDouble(minX);
+            header.putDouble(maxX);
+            header.putDouble(minY);
+            header.putDouble(maxY);
+            header.putLong(0);
+            writeFully(channel, header.flip(), 0);
+            writeFully(channel, index.flip(), IndexedPointFile.HEADER_SIZE);
+        }
+    }
+
+    // Закодировать порцию в буфер chunk (после вызова буфер готов к чтению)
+    private void encodeChunk(double[] xs, double[] ys, int count) {
+        // Худший случай: два столбца double и заголовок порции (более длинные кодировки
+        // не выбираются)
+        int capacity = IndexedPointFile.CHUNK_HEADER_SIZE + 2 * count * Double.BYTES;
+        if (chunk.capacity() < capacity) {
+            chunk = ByteBuffer.allocate(capacity).order(ByteOrder.BIG_ENDIAN);
+        }
+        chunk.clear();
+        chunk.position(IndexedPointFile.CHUNK_HEADER_SIZE);
+        int xColumn = encodeColumn(xs, count);
+        int yColumn = encodeColumn(ys, count);
+        chunk.put(0, (byte) (xColumn >> 8));
+        chunk.put(1, (byte) xColumn);
+        chunk.put(2, (byte) (yColumn >> 8));
+        chunk.put(3, (byte) yColumn);
+        chunk.flip();
+    }
+
+    // Записать столбец в буфер chunk; возвращает кодировку в старшем байте и число
+    // знаков после запятой в младшем
+    private int encodeColumn(double[] values, int count) {
+        long fixedSize = (long) count * (allowFloat ? Float.BYTES : Double.BYTES);
+        int scale = findDecimalScale(values, count);
+        long decimalSize = scale >= 0 ? deltaSize(mantissas, count, 1) : Long.MAX_VALUE;
+        if (bits.length < count) {
+            bits = new long[count];
+        }
+        for (int i = 0; i < count; i++) {
+            bits[i] = Double.doubleToRawLongBits(values[i]);
+        }
+        long bitsSize = deltaSize(bits, count, 2);
+
+        if (decimalSize <= bitsSize && decimalSize <= fixedSize) {
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                putVarLong(mantissas[i] - previous);
+                previous = mantissas[i];
+            }
+            return IndexedPointFile.ENCODING_DECIMAL << 8 | scale;
+        }
+        if (bitsSize <= fixedSize) {
+            long previous = 0;
+            long previousDelta = 0;
+            for (int i = 0; i < count; i++) {
+                long delta = bits[i] - previous;
+                putVarLong(delta - previousDelta);
+                previous = bits[i];
+                previousDelta = delta;
+            }
+            return IndexedPointFile.ENCODING_DOUBLE_DELTA << 8;
+        }
+        if (allowFloat) {
+            for (int i = 0; i < count; i++) {
+                chunk.putFloat((float) values[i]);
+            }
+            return IndexedPointFile.ENCODING_FLOAT << 8;
+        }
+        for (int i = 0; i < count; i++) {
+            chunk.putDouble(values[i]);
+        }
+        return IndexedPointFile.ENCODING_DOUBLE << 8;
+    }
+
+    // Наименьшее число знаков после запятой, с которым все значения столбца
+    // восстанавливаются точно (мантиссы сохраняются в mantissas); -1 - такого нет
+    private int findDecimalScale(double[] values, int count) {
+        if (mantissas.length < count) {
+            mantissas = new long[count];
+        }
+        int scale = 0;
+        for (int i = 0; i < count; i++) {
+            double value = values[i];
+            // Подобрать число знаков для этого значения, начиная с уже найденного
+            while (true) {
+                double power = IndexedPointFile.POWERS_OF_TEN[scale];
+                double mantissa = Math.rint(value * power);
+                if (Math.abs(mantissa) < MAX_MANTISSA && mantissa / power == value) break;
+                // Бесконечности и NaN не проходят проверку ни при каком числе знаков
+                if (++scale > IndexedPointFile.MAX_DECIMAL_SCALE || Double.isNaN(value)
+                        || Double.isInfinite(value)) {
+                    return -1;
+                }
+            }
+            // -0.0 проходит проверку (равно 0.0), но из мантиссы 0 восстановится как 0.0
+            if (Double.doubleToRawLongBits(value) == NEGATIVE_ZERO_BITS) {
+                return -1;
+            }
+        }
+        double power = IndexedPointFile.POWERS_OF_TEN[scale];
+        for (int i = 0; i < count; i++) {
+            double mantissa = Math.rint(values[i] * power);
+            // С большим числом знаков значение тоже может потерять точность
+            if (Math.abs(mantissa) >= MAX_MANTISSA || mantissa / power != values[i]) {
+                return -1;
+            }
+            mantissas[i] = (long) mantissa;
+        }
+        return scale;
+    }
+
+    // Размер в байтах разностей порядка order (1 или 2) значений values
+    private static long deltaSize(long[] values, int count, int order) {
+        long size = 0;
+        long previous = 0;
+        long previousDelta = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = values[i] - previous;
+            size += varLongSize(order == 1 ? delta : delta - previousDelta);
+            previous = values[i];
+            previousDelta = delta;
+        }
+        return size;
+    }
+
+    private static int varLongSize(long value) {
+        long raw = (value << 1) ^ (value >> 63);
+        return Math.max(1, (64 - Long.numberOfLeadingZeros(raw) + 6) / 7);
+    }
+
+    // Число со знаком в зигзаг-кодировке, по 7 бит в байте, младшие биты первыми
+    private void putVarLong(long value) {
+        long raw = (value << 1) ^ (value >> 63);
+        while ((raw & ~0x7FL) != 0) {
+            chunk.put((byte) ((raw & 0x7F) | 0x80));
+            raw >>>= 7;
+        }
+        chunk.put((byte) raw);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    // Преобразовать файл старого формата в индексированный
+    public static void convert(File input, File output, int chunkPoints, boolean allowFloat) throws IOException {
+        GraphicsFileLoader.Result result = GraphicsFileLoader.load(input);
+        if (result.getTruncatedBytes() > 0) {
+            System.err.println(input + ": файл обрывается на неполной записи, последние "
+                    + result.getTruncatedBytes() + " байт пропущены");
+        }
+        new IndexedPointFileWriter(chunkPoints, allowFloat).write(result.getSeries(), output);
+    }
+
+    // Запуск: IndexedPointFileWriter <файл старого формата> <новый файл> [--float] [--chunk N]
+    public static void main(String[] args) throws IOException {
+        boolean allowFloat = false;
+        int chunkPoints = DEFAULT_CHUNK_POINTS;
+        String input = null;
+        String output = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--float")) {
+                allowFloat = true;
+            } else if (args[i].equals("--chunk") && i + 1 < args.length) {
+                chunkPoints = Integer.parseInt(args[++i]);
+            } else if (input == null) {
+                input = args[i];
+            } else if (output == null) {
+                output = args[i];
+            } else {
+                input = null;
+                break;
+            }
+        }
+        if (input == null || output == null) {
+            System.err.println("Использование: IndexedPointFileWriter <файл старого формата> <новый файл>"
+                    + " [--float] [--chunk N]");
+            System.exit(2);
+        }
+        File inputFile = new File(input);
+        File outputFile = new File(output);
+        convert(inputFile, outputFile, chunkPoints, allowFloat);
+        System.out.printf("%s: %,d -> %,d байт (в %.1f раза меньше)%n", outputFile,
+                inputFile.length(), outputFile.length(), (double) inputFile.length() / outputFile.length());
+    }
+}
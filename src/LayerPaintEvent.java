@@ -0,0 +1,25 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Событие JFR: перерисовка одного слоя GraphicsDisplay
+@Name("graphics.LayerPaint")
+@Label("Graphics Layer Paint")
+@Category("Graphics")
+@Description("Перерисовка слоя графика: оси, линия, маркеры точек или маркеры нулей")
+public class LayerPaintEvent extends Event {
+
+    @Label("Layer")
+    String layer;
+
+    @Label("Points Drawn")
+    long pointsDrawn;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+}
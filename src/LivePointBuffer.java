@@ -0,0 +1,290 @@
+// Кольцевой буфер точек для графиков, пополняемых в реальном времени.
+// Без ограничения ёмкости буфер растёт как обычный ряд; с ограничением хранит
+// только последние точки, вытесняя самые старые. Минимумы и максимумы по X и Y
+// поддерживаются по мере добавления и вытеснения точек без повторного обхода,
+// а класс каждой точки по правилу выделения вычисляется один раз при добавлении.
+// Класс не синхронизирован - владелец сам защищает доступ к нему
+public class LivePointBuffer {
+
+    // Начальная ёмкость буфера без ограничения
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private double[] xs;
+    private double[] ys;
+    private byte[] classes;
+    // Положение самой старой точки и число точек в буфере
+    private int head;
+    private int size;
+    // Наибольшее число хранимых точек (0 - без ограничения)
+    private int retention;
+
+    // Порядковый номер самой старой точки среди всех когда-либо добавленных
+    private long firstSequence;
+
+    // Правило выделения точек (null - все точки класса 0)
+    private PointClassifier classifier;
+
+    private final Extremum minX = new Extremum(false);
+    private final Extremum maxX = new Extremum(true);
+    private final Extremum minY = new Extremum(false);
+    private final Extremum maxY = new Extremum(true);
+
+    public LivePointBuffer() {
+        this(0);
+    }
+
+    public LivePointBuffer(int retention) {
+        setRetention(retention);
+    }
+
+    // Ограничить буфер последними retention точками (0 - хранить все точки)
+    public void setRetention(int retention) {
+        if (retention < 0) {
+            throw new IllegalArgumentException("Отрицательная ёмкость буфера: " + retention);
+        }
+        // Сохранить последние точки в новом порядке с начала массива
+        int keep = retention > 0 ? Math.min(size, retention) : size;
+        int capacity = retention > 0 ? retention : Math.max(DEFAULT_CAPACITY, size);
+        double[] newXs = new double[capacity];
+        double[] newYs = new double[capacity];
+        byte[] newClasses = new byte[capacity];
+        for (int k = 0; k < keep; k++) {
+            int i = physical(size - keep + k);
+            newXs[k] = xs[i];
+            newYs[k] = ys[i];
+            newClasses[k] = classes[i];
+        }
+        xs = newXs;
+        ys = newYs;
+        classes = newClasses;
+        head = 0;
+        size = 0;
+        this.retention = retention;
+        firstSequence = 0;
+        minX.reset(capacity);
+        maxX.reset(capacity);
+        minY.reset(capacity);
+        maxY.reset(capacity);
+        for (int k = 0; k < keep; k++) {
+            size++;
+            register(k, xs[k], ys[k]);
+        }
+    }
+
+    public int getRetention() {
+        return retention;
+    }
+
+    // Правило выделения точек; классы уже хранящихся точек пересчитываются
+    public void setClassifier(PointClassifier classifier) {
+        this.classifier = classifier;
+        for (int k = 0; k < size; k++) {
+            int i = physical(k);
+            classes[i] = classify(xs[i], ys[i]);
+        }
+    }
+
+    public PointClassifier getClassifier() {
+        return classifier;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Порядковый номер самой старой точки буфера среди всех добавленных с последнего
+    // вызова setRetention или clear (растёт, когда точки вытесняются)
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(double x, double y) {
+        if (retention > 0 && size == retention) {
+            // Буфер полон - вытеснить самую старую точку
+            head = (head + 1) % xs.length;
+            size--;
+            firstSequence++;
+            minX.evict(firstSequence);
+            maxX.evict(firstSequence);
+            minY.evict(firstSequence);
+            maxY.evict(firstSequence);
+        } else if (size == xs.length) {
+            grow();
+        }
+        int i = physical(size);
+        xs[i] = x;
+        ys[i] = y;
+        classes[i] = classify(x, y);
+        size++;
+        register(size - 1, x, y);
+    }
+
+    public void addAll(double[] xs, double[] ys, int off, int len) {
+        for (int k = off; k < off + len; k++) {
+            add(xs[k], ys[k]);
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        firstSequence = 0;
+        minX.reset(xs.length);
+        maxX.reset(xs.length);
+        minY.reset(xs.length);
+        maxY.reset(xs.length);
+    }
+
+    // Координаты i-й по возрасту точки (0 - самая старая)
+    public double getX(int i) {
+        return xs[physical(i)];
+    }
+
+    public double getY(int i) {
+        return ys[physical(i)];
+    }
+
+    public byte getPointClass(int i) {
+        return classes[physical(i)];
+    }
+
+    public double getMinX() {
+        return minX.value();
+    }
+
+    public double getMaxX() {
+        return maxX.value();
+    }
+
+    public double getMinY() {
+        return minY.value();
+    }
+
+    public double getMaxY() {
+        return maxY.value();
+    }
+
+    // Скопировать точки буфера в ряд out по порядку (прежнее содержимое out удаляется)
+    public void copyTo(PointSeries out) {
+        out.clear();
+        int firstPart = Math.min(size, xs.length - head);
+        out.addAll(xs, ys, head, firstPart);
+        out.addAll(xs, ys, 0, size - firstPart);
+    }
+
+    // Скопировать классы точек по порядку в массив out; если он короче size(),
+    // создаётся новый массив. Возвращает массив с классами
+    public byte[] copyClassesTo(byte[] out) {
+        if (out.length < size) {
+            out = new byte[Math.max(size, out.length + (out.length >> 1))];
+        }
+        int firstPart = Math.min(size, classes.length - head);
+        System.arraycopy(classes, head, out, 0, firstPart);
+        System.arraycopy(classes, 0, out, firstPart, size - firstPart);
+        return out;
+    }
+
+    private int physical(int i) {
+        int j = head + i;
+        return j < xs.length ? j : j - xs.length;
+    }
+
+    private byte classify(double x, double y) {
+        return classifier != null ? classifier.classify(x, y) : 0;
+    }
+
+    private void register(int i, double x, double y) {
+        long sequence = firstSequence + i;
+        minX.push(sequence, x);
+        maxX.push(sequence, x);
+        minY.push(sequence, y);
+        maxY.push(sequence, y);
+    }
+
+    // Рост буфера без ограничения: точки переносятся в начало нового массива
+    private void grow() {
+        int capacity = xs.length + (xs.length >> 1) + 1;
+        double[] newXs = new double[capacity];
+        double[] newYs = new double[capacity];
+        byte[] newClasses = new byte[capacity];
+        for (int k = 0; k < size; k++) {
+            int i = physical(k);
+            newXs[k] = xs[i];
+            newYs[k] = ys[i];
+            newClasses[k] = classes[i];
+        }
+        xs = newXs;
+        ys = newYs;
+        classes = newClasses;
+        head = 0;
+        minX.grow(capacity);
+        maxX.grow(capacity);
+        minY.grow(capacity);
+        maxY.grow(capacity);
+    }
+
+    // Минимум или максимум по скользящему окну: монотонная очередь кандидатов.
+    // Кандидат, который хуже более новой точки, уже никогда не станет экстремумом
+    // и удаляется сразу, поэтому каждая точка добавляется и удаляется не более раза
+    private static class Extremum {
+        private final boolean max;
+        private long[] sequences = new long[0];
+        private double[] values = new double[0];
+        private int first;
+        private int count;
+
+        Extremum(boolean max) {
+            this.max = max;
+        }
+
+        void reset(int capacity) {
+            sequences = new long[capacity];
+            values = new double[capacity];
+            first = 0;
+            count = 0;
+        }
+
+        void grow(int capacity) {
+            long[] newSequences = new long[capacity];
+            double[] newValues = new double[capacity];
+            for (int k = 0; k < count; k++) {
+                int i = (first + k) % sequences.length;
+                newSequences[k] = sequences[i];
+                newValues[k] = values[i];
+            }
+            sequences = newSequences;
+            values = newValues;
+            first = 0;
+        }
+
+        void push(long sequence, double value) {
+            while (count > 0) {
+                double last = values[(first + count - 1) % values.length];
+                if (max ? last > value : last < value) {
+                    break;
+                }
+                count--;
+            }
+            int i = (first + count) % values.length;
+            sequences[i] = sequence;
+            values[i] = value;
+            count++;
+        }
+
+        // Убрать кандидатов старше точки с номером oldest
+        void evict(long oldest) {
+            while (count > 0 && sequences[first] < oldest) {
+                first = (first + 1) % sequences.length;
+                count--;
+            }
+        }
+
+        double value() {
+            return count > 0 ? values[first] : Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+// Прореживание ряда по столбцам пикселей (алгоритм M4): для каждой группы
+// подряд идущих точек, попадающих в один столбец экрана, остаются только
+// первая, последняя, минимальная и максимальная точки. Ломаная через эти
+// точки закрашивает на экране те же пиксели, что и ломаная через все точки
+public class M4Decimator {
+
+    private M4Decimator() {
+    }
+
+    // Прорядить точки ряда с индексами [from, to). Столбец точки определяется
+    // как floor((x - minX) * scale); выбранные точки в исходном порядке
+    // записываются в out (его прежнее содержимое удаляется)
+    public static void decimate(PointSeries series, int from, int to,
+                                double minX, double scale, PointSeries out) {
+        out.clear();
+        int i = from;
+        while (i < to) {
+            double column = Math.floor((series.getX(i) - minX) * scale);
+            int first = i;
+            int minIndex = i;
+            int maxIndex = i;
+            double minY = series.getY(i);
+            double maxY = minY;
+            i++;
+            while (i < to && Math.floor((series.getX(i) - minX) * scale) == column) {
+                double y = series.getY(i);
+                if (y < minY) {
+                    minY = y;
+                    minIndex = i;
+                }
+                if (y > maxY) {
+                    maxY = y;
+                    maxIndex = i;
+                }
+                i++;
+            }
+            int last = i - 1;
+
+            // Вывести первую, экстремальные и последнюю точки по возрастанию индекса без повторов
+            out.add(series.getX(first), series.getY(first));
+            int previous = first;
+            int lower = Math.min(minIndex, maxIndex);
+            int upper = Math.max(minIndex, maxIndex);
+            if (lower > previous) {
+                out.add(series.getX(lower), series.getY(lower));
+                previous = lower;
+            }
+            if (upper > previous) {
+                out.add(series.getX(upper), series.getY(upper));
+                previous = upper;
+            }
+            if (last > previous) {
+                out.add(series.getX(last), series.getY(last));
+            }
+        }
+    }
+}
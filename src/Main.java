@@ -1,12 +1,19 @@
 
 
 
+import java.util.Arrays;
 import javax.swing.*;
 
 //TIP To <b>Run</b> code, press <shortcut actionId="Run"/> or
 // click the <icon src="AllIcons.Actions.Execute"/> icon in the gutter.
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        // Main --render <входной каталог> <выходной каталог> [ширина высота] [--range fromX toX] -
+        // пакетная отрисовка файлов в PNG без окна
+        if (args.length > 0 && args[0].equals("--render")) {
+            BatchRenderer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         // Создать и показать экземпляр главного окна приложения
         MainFrame frame = new MainFrame();
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
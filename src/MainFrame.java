@@ -1,20 +1,45 @@
 
 import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Cursor;
+import java.awt.Dimension;
+import java.awt.GridLayout;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
-import java.io.DataInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
+import javax.swing.ButtonGroup;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JList;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.event.MenuEvent;
 import javax.swing.event.MenuListener;
 
@@ -33,6 +58,10 @@ public class MainFrame extends JFrame {
     private JCheckBoxMenuItem showAxisMenuItem;
     private JCheckBoxMenuItem showMarkersMenuItem;
     private JCheckBoxMenuItem showNullMarkersMenuItem;
+    private JCheckBoxMenuItem showFrameTimeMenuItem;
+    private JCheckBoxMenuItem tiledRenderingMenuItem;
+    private JCheckBoxMenuItem draftRenderingMenuItem;
+    private JCheckBoxMenuItem followFileMenuItem;
 
     // Компонент-отображатель графика
     private GraphicsDisplay display = new GraphicsDisplay();
@@ -40,6 +69,55 @@ public class MainFrame extends JFrame {
     // Флаг, указывающий на загруженность данных графика
     private boolean fileLoaded = false;
 
+    // Фоновый поток, в котором читаются файлы с графиками
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "graphics-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Текущая загрузка или импорт файла (null - ничего не загружается)
+    private SwingWorker<?, ?> loadTask;
+
+    // Поток, в котором ожидаются и читаются записи, дописанные в показанный файл
+    private final ExecutorService followExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "graphics-follower");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Слежение за показанным файлом (null - не ведётся)
+    private GraphicsFollowTask followTask;
+
+    // Показанный файл старого формата, его ряд и число уже прочитанных байтов
+    // (null - показан файл индексированного формата или загрузка не завершена)
+    private File followedFile;
+    private PointSeries followedSeries;
+    private long followedBytes;
+
+    // Рабочая область: список файлов слева от графика. Первый из выделенных файлов
+    // показывается как основной график, остальные накладываются на него
+    private final DefaultListModel<File> workspaceFiles = new DefaultListModel<>();
+    private JList<File> workspaceList;
+    private JScrollPane workspacePane;
+
+    // Загруженные ряды файлов рабочей области (вытесненные читаются заново)
+    private final SeriesCache seriesCache = new SeriesCache(SeriesCache.DEFAULT_BUDGET_BYTES);
+
+    // Номер последнего выделения в рабочей области - загрузки прежних выделений не показываются
+    private int workspaceGeneration;
+
+    // Файл рабочей области, показанный как основной график, и его ряд
+    private File workspaceShownFile;
+    private PointSeries workspaceShownSeries;
+
+    // Способ хранения точек загружаемых файлов
+    private PointSeries.Storage storage = PointSeries.Storage.DOUBLE;
+
+    // Панель с ходом загрузки и кнопкой отмены - видна только во время загрузки
+    private JPanel loadPanel;
+    private JProgressBar loadProgressBar;
+
     public MainFrame() {
         // Вызов конструктора предка Frame
         super("Построение графиков функций на основе заранее подготовленных файлов");
@@ -72,6 +150,80 @@ public class MainFrame extends JFrame {
         };
         //  Добавить соответствующий элемент меню
         fileMenu.add(openGraphicsAction);
+        // Импорт точек из текстового файла (CSV, TSV, числа через пробел)
+        Action importTextAction = new AbstractAction("Импортировать текстовый файл") {
+            public void actionPerformed(ActionEvent event) {
+                if (fileChooser == null) {
+                    fileChooser = new JFileChooser();
+                    fileChooser.setCurrentDirectory(new File("."));
+                }
+                if (fileChooser.showOpenDialog(MainFrame.this) != JFileChooser.APPROVE_OPTION) return;
+                File selectedFile = fileChooser.getSelectedFile();
+                TextPointFileImporter importer = askImportOptions(selectedFile);
+                if (importer != null) {
+                    importGraphics(selectedFile, importer);
+                }
+            }
+        };
+        fileMenu.add(importTextAction);
+        // Рабочая область: несколько файлов, выделенные ряды показываются в общих осях
+        fileMenu.addSeparator();
+        Action addWorkspaceFilesAction = new AbstractAction("Добавить файлы в рабочую область") {
+            public void actionPerformed(ActionEvent event) {
+                JFileChooser chooser = new JFileChooser(fileChooser != null
+                        ? fileChooser.getCurrentDirectory() : new File("."));
+                chooser.setMultiSelectionEnabled(true);
+                if (chooser.showOpenDialog(MainFrame.this) != JFileChooser.APPROVE_OPTION) return;
+                for (File file : chooser.getSelectedFiles()) {
+                    if (!workspaceFiles.contains(file)) {
+                        workspaceFiles.addElement(file);
+                    }
+                }
+                workspacePane.setVisible(!workspaceFiles.isEmpty());
+                getContentPane().revalidate();
+            }
+        };
+        fileMenu.add(addWorkspaceFilesAction);
+        Action removeWorkspaceFilesAction = new AbstractAction("Убрать из рабочей области") {
+            public void actionPerformed(ActionEvent event) {
+                for (File file : workspaceList.getSelectedValuesList()) {
+                    workspaceFiles.removeElement(file);
+                    seriesCache.remove(file);
+                }
+                workspacePane.setVisible(!workspaceFiles.isEmpty());
+                getContentPane().revalidate();
+            }
+        };
+        fileMenu.add(removeWorkspaceFilesAction);
+        Action cacheBudgetAction = new AbstractAction("Память для рядов рабочей области...") {
+            public void actionPerformed(ActionEvent event) {
+                askCacheBudget();
+            }
+        };
+        fileMenu.add(cacheBudgetAction);
+        // Компактное хранение позволяет держать в памяти в 2-4 раза больше точек;
+        // выбор действует на файлы, загружаемые после него
+        JMenu storageMenu = new JMenu("Хранение точек");
+        ButtonGroup storageGroup = new ButtonGroup();
+        addStorageMenuItem(storageMenu, storageGroup, "Точно (double, 16 байт на точку)", PointSeries.Storage.DOUBLE);
+        addStorageMenuItem(storageMenu, storageGroup, "Компактно (float, 8 байт на точку)", PointSeries.Storage.FLOAT);
+        addStorageMenuItem(storageMenu, storageGroup, "Очень компактно (16 бит, 4 байта на точку)",
+                PointSeries.Storage.QUANTIZED);
+        fileMenu.add(storageMenu);
+        fileMenu.addSeparator();
+        // Дочитывать записи, которые другой процесс дописывает в показанный файл
+        Action followFileAction = new AbstractAction("Следить за изменениями файла") {
+            public void actionPerformed(ActionEvent event) {
+                if (followFileMenuItem.isSelected()) {
+                    startFollowing();
+                } else {
+                    stopFollowing();
+                }
+            }
+        };
+        followFileMenuItem = new JCheckBoxMenuItem(followFileAction);
+        fileMenu.add(followFileMenuItem);
+        followFileMenuItem.setSelected(false);
         // Создать пункт меню "График"
         JMenu graphicsMenu = new JMenu("График");
         menuBar.add(graphicsMenu);
@@ -112,53 +264,493 @@ public class MainFrame extends JFrame {
         graphicsMenu.add(showNullMarkersMenuItem);
 // Элемент по умолчанию включен (отмечен флажком)
         showNullMarkersMenuItem.setSelected(false);
+
+        // Время отрисовки кадра и слоёв поверх графика (по умолчанию скрыто)
+        Action showFrameTimeAction = new AbstractAction("Показывать время отрисовки") {
+            public void actionPerformed(ActionEvent event) {
+                display.setShowFrameTime(showFrameTimeMenuItem.isSelected());
+            }
+        };
+        showFrameTimeMenuItem = new JCheckBoxMenuItem(showFrameTimeAction);
+        graphicsMenu.addSeparator();
+        graphicsMenu.add(showFrameTimeMenuItem);
+        showFrameTimeMenuItem.setSelected(false);
+
+        // Отрисовка больших графиков по полосам в несколько потоков, все точки без
+        // прореживания (по умолчанию выключена)
+        Action tiledRenderingAction = new AbstractAction("Многопоточная отрисовка") {
+            public void actionPerformed(ActionEvent event) {
+                display.setTiledRendering(tiledRenderingMenuItem.isSelected());
+            }
+        };
+        tiledRenderingMenuItem = new JCheckBoxMenuItem(tiledRenderingAction);
+        graphicsMenu.add(tiledRenderingMenuItem);
+        tiledRenderingMenuItem.setSelected(false);
+
+        // Черновик во время изменения вида большого графика (по умолчанию включён)
+        Action draftRenderingAction = new AbstractAction("Черновик при изменении вида") {
+            public void actionPerformed(ActionEvent event) {
+                display.setFrameBudgetMillis(draftRenderingMenuItem.isSelected()
+                        ? GraphicsDisplay.DEFAULT_FRAME_BUDGET_MILLIS : Integer.MAX_VALUE);
+            }
+        };
+        draftRenderingMenuItem = new JCheckBoxMenuItem(draftRenderingAction);
+        graphicsMenu.add(draftRenderingMenuItem);
+        draftRenderingMenuItem.setSelected(true);
 // Зарегистрировать обработчик событий, связанных с меню "График"
 
         graphicsMenu.addMenuListener(new GraphicsMenuListener());
 
 // Установить GraphicsDisplay в цент граничной компоновки
         getContentPane().add(display, BorderLayout.CENTER);
+
+        // Список файлов рабочей области - виден, когда в ней есть файлы
+        workspaceList = new JList<>(workspaceFiles);
+        workspaceList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        workspaceList.setCellRenderer(new DefaultListCellRenderer() {
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                          boolean isSelected, boolean cellHasFocus) {
+                super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+                setText(((File) value).getName());
+                setToolTipText(((File) value).getPath());
+                return this;
+            }
+        });
+        workspaceList.addListSelectionListener(event -> {
+            if (!event.getValueIsAdjusting()) {
+                showWorkspaceSelection();
+            }
+        });
+        workspacePane = new JScrollPane(workspaceList);
+        workspacePane.setPreferredSize(new Dimension(220, 0));
+        workspacePane.setVisible(false);
+        getContentPane().add(workspacePane, BorderLayout.WEST);
+
+        // Панель хода загрузки располагается под графиком
+        loadProgressBar = new JProgressBar(0, 100);
+        loadProgressBar.setStringPainted(true);
+        JButton cancelButton = new JButton(new AbstractAction("Отмена") {
+            public void actionPerformed(ActionEvent event) {
+                if (loadTask != null) {
+                    loadTask.cancel(false);
+                }
+            }
+        });
+        loadPanel = new JPanel(new BorderLayout());
+        loadPanel.add(loadProgressBar, BorderLayout.CENTER);
+        loadPanel.add(cancelButton, BorderLayout.EAST);
+        loadPanel.setVisible(false);
+        getContentPane().add(loadPanel, BorderLayout.SOUTH);
     }
 
-    // Считывание данных графика из существующего файла
+    // Считывание данных графика из существующего файла. Файл читается в фоновом
+    // потоке, а прочитанные точки показываются по мере поступления
     protected void openGraphics(File selectedFile) {
+        leaveWorkspace();
+        cancelLoading();
+        GraphicsFileLoader loader;
         try {
+            loader = new GraphicsFileLoader(selectedFile, storage);
+        } catch (NoSuchFileException ex) {
+            // В случае исключительной ситуации типа "Файл не найден" показать сообщение об ошибке
+            JOptionPane.showMessageDialog(MainFrame.this, "Указанный  файл не найден", "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+            return;
+        } catch (IOException ex) {
+            // В случае ошибки ввода из файлового потока показать сообщение об ошибке
+            JOptionPane.showMessageDialog(MainFrame.this, "Ошибка чтения  координат точек из файла", "Ошибка загрузки данных",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        GraphicsLoadTask task = new GraphicsLoadTask(selectedFile, loader);
+        startLoading(task);
+    }
 
-            DataInputStream in = new DataInputStream(new
-                    FileInputStream(selectedFile));
+    private void addStorageMenuItem(JMenu menu, ButtonGroup group, String text, PointSeries.Storage value) {
+        JRadioButtonMenuItem item = new JRadioButtonMenuItem(new AbstractAction(text) {
+            public void actionPerformed(ActionEvent event) {
+                storage = value;
+                seriesCache.setStorage(value);
+            }
+        });
+        item.setSelected(value == storage);
+        group.add(item);
+        menu.add(item);
+    }
 
-            Double[][] graphicsData = new
-                    Double[in.available() / (Double.SIZE / 8) / 2][];
+    // Сохранить рядом с файлом сводку показанного графика, чтобы в следующий раз
+    // график появился сразу. Сводка собирается из уже вычисленной статистики, а
+    // записывается в потоке загрузки
+    private void writeSummary(File file) {
+        GraphicsSummary summary = display.createSummary();
+        if (summary == null) return;
+        loadExecutor.execute(() -> {
+            try {
+                summary.write(file);
+            } catch (IOException ex) {
+                // Сводка лишь ускоряет открытие: если её нельзя записать (например,
+                // каталог только для чтения), файл будет открываться без неё
+            }
+        });
+    }
 
-            int i = 0;
-            while (in.available() > 0) {
+    // Незавершённая загрузка предыдущего файла и слежение за ним больше не нужны
+    private void cancelLoading() {
+        if (loadTask != null) {
+            loadTask.cancel(false);
+        }
+        stopFollowing();
+        followedFile = null;
+        followedSeries = null;
+    }
 
-                Double x = in.readDouble();
+    // Показать выделенные ряды рабочей области. Ряды запрашиваются у кэша все сразу
+    // и загружаются одновременно; график обновляется, когда готовы все ряды
+    private void showWorkspaceSelection() {
+        List<File> files = workspaceList.getSelectedValuesList();
+        if (files.isEmpty()) return;
+        int generation = ++workspaceGeneration;
+        List<CompletableFuture<PointSeries>> futures = new ArrayList<>();
+        for (File file : files) {
+            futures.add(seriesCache.get(file));
+        }
+        workspaceList.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, ex) ->
+                SwingUtilities.invokeLater(() -> workspaceLoaded(generation, files, futures)));
+    }
 
-                Double y = in.readDouble();
-                // Прочитанная пара координат добавляется в массив
-                graphicsData[i++] = new Double[]{x, y};
+    // Вызывается в потоке обработки событий, когда загрузки выделенных рядов завершены
+    private void workspaceLoaded(int generation, List<File> files, List<CompletableFuture<PointSeries>> futures) {
+        // Выделение уже изменилось или открыт другой файл
+        if (generation != workspaceGeneration) return;
+        workspaceList.setCursor(Cursor.getDefaultCursor());
+        List<File> shownFiles = new ArrayList<>();
+        List<PointSeries> shownSeries = new ArrayList<>();
+        StringBuilder errors = new StringBuilder();
+        for (int i = 0; i < files.size(); i++) {
+            try {
+                PointSeries series = futures.get(i).join();
+                if (series.isEmpty()) continue;
+                shownFiles.add(files.get(i));
+                shownSeries.add(series);
+            } catch (CompletionException ex) {
+                errors.append(ex.getCause().getMessage()).append('\n');
             }
+        }
+        if (errors.length() > 0) {
+            JOptionPane.showMessageDialog(MainFrame.this, "Не удалось прочитать файлы:\n" + errors,
+                    "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+        }
+        if (shownSeries.isEmpty()) return;
 
-            if (graphicsData != null && graphicsData.length > 0) {
-                // Да - установить флаг загруженности данных
+        cancelLoading();
+        // Основной ряд не изменился - вид графика сохраняется, меняются только наложенные ряды
+        if (shownFiles.get(0) != workspaceShownFile || shownSeries.get(0) != workspaceShownSeries) {
+            workspaceShownFile = shownFiles.get(0);
+            workspaceShownSeries = shownSeries.get(0);
+            fileLoaded = true;
+            display.showGraphics(workspaceShownSeries);
+            display.setGraphicsName(workspaceShownFile.getName());
+        }
+        List<String> names = new ArrayList<>();
+        for (File file : shownFiles.subList(1, shownFiles.size())) {
+            names.add(file.getName());
+        }
+        display.setOverlays(shownSeries.subList(1, shownSeries.size()), names);
+    }
+
+    // Показ файла не из рабочей области: выделение в ней снимается, а её
+    // незавершённые загрузки больше не показываются
+    private void leaveWorkspace() {
+        workspaceGeneration++;
+        workspaceShownFile = null;
+        workspaceShownSeries = null;
+        workspaceList.clearSelection();
+        workspaceList.setCursor(Cursor.getDefaultCursor());
+    }
+
+    // Спросить бюджет памяти кэша рядов рабочей области
+    private void askCacheBudget() {
+        long megabyte = 1L << 20;
+        String answer = JOptionPane.showInputDialog(this, String.format("Занято %,d МБ, рядов в памяти: %d%n"
+                        + "Наибольший объём рядов в памяти (МБ, доступно %,d МБ):",
+                seriesCache.getUsedBytes() / megabyte, seriesCache.getSeriesCount(),
+                Runtime.getRuntime().maxMemory() / megabyte), seriesCache.getBudgetBytes() / megabyte);
+        if (answer == null) return;
+        try {
+            long budget = Long.parseLong(answer.trim());
+            if (budget <= 0) throw new NumberFormatException(answer);
+            seriesCache.setBudgetBytes(budget * megabyte);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Объём должен быть положительным целым числом мегабайт",
+                    "Память для рядов", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    // Показать панель хода загрузки и запустить загрузку в фоновом потоке
+    private void startLoading(SwingWorker<?, ?> task) {
+        loadTask = task;
+        loadProgressBar.setValue(0);
+        loadPanel.setVisible(true);
+        getContentPane().revalidate();
+        loadExecutor.execute(task);
+    }
+
+    // Спросить разделитель полей и столбцы координат текстового файла
+    // (null - пользователь отказался от импорта)
+    private TextPointFileImporter askImportOptions(File file) {
+        String[] delimiterNames = {"Запятая", "Точка с запятой", "Табуляция", "Пробелы"};
+        char[] delimiters = {',', ';', '\t', TextPointFileImporter.WHITESPACE};
+        JComboBox<String> delimiterBox = new JComboBox<>(delimiterNames);
+        // Разделитель по умолчанию - по расширению файла
+        String name = file.getName().toLowerCase();
+        delimiterBox.setSelectedIndex(name.endsWith(".csv") ? 0 : name.endsWith(".tsv") ? 2 : 3);
+        // Столбцы нумеруются с 1; столбец X 0 - номер точки вместо X
+        JSpinner xColumnSpinner = new JSpinner(new SpinnerNumberModel(1, 0, 10000, 1));
+        JSpinner yColumnSpinner = new JSpinner(new SpinnerNumberModel(2, 1, 10000, 1));
+
+        JPanel panel = new JPanel(new GridLayout(3, 2, 8, 4));
+        panel.add(new JLabel("Разделитель полей:"));
+        panel.add(delimiterBox);
+        panel.add(new JLabel("Столбец X (0 - номер точки):"));
+        panel.add(xColumnSpinner);
+        panel.add(new JLabel("Столбец Y:"));
+        panel.add(yColumnSpinner);
+        if (JOptionPane.showConfirmDialog(this, panel, "Импорт текстового файла",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return null;
+        }
+        int xColumn = (Integer) xColumnSpinner.getValue();
+        return new TextPointFileImporter(delimiters[delimiterBox.getSelectedIndex()],
+                xColumn > 0 ? xColumn - 1 : TextPointFileImporter.POINT_NUMBER,
+                (Integer) yColumnSpinner.getValue() - 1);
+    }
+
+    // Импорт точек из текстового файла. Файл разбирается в фоновом потоке (и в
+    // пуле fork-join), а график показывается, когда прочитаны все точки
+    protected void importGraphics(File selectedFile, TextPointFileImporter importer) {
+        leaveWorkspace();
+        cancelLoading();
+        GraphicsImportTask task = new GraphicsImportTask(selectedFile, importer);
+        task.addPropertyChangeListener(event -> {
+            if (loadTask == task && "progress".equals(event.getPropertyName())) {
+                loadProgressBar.setValue((Integer) event.getNewValue());
+            }
+        });
+        startLoading(task);
+    }
+
+    // Фоновая загрузка файла: порции точек читаются в потоке загрузки, а в потоке
+    // обработки событий становятся видимыми в ряду и дорисовываются на графике
+    private class GraphicsLoadTask extends SwingWorker<Void, Integer> {
+
+        private final File file;
+        private final GraphicsFileLoader loader;
+
+        // Показан ли уже ряд этого файла в отображателе
+        private boolean shown = false;
+
+        // Действительная сводка файла (null - её нет, и после загрузки она записывается)
+        private volatile GraphicsSummary summary;
+
+        GraphicsLoadTask(File file, GraphicsFileLoader loader) {
+            this.file = file;
+            this.loader = loader;
+        }
+
+        protected Void doInBackground() throws IOException {
+            try (GraphicsFileLoader in = loader) {
+                // Со сводкой график показывается сразу, ещё до первой порции точек
+                summary = GraphicsSummary.read(file, in.getPointCount());
+                if (summary != null) {
+                    publish(0);
+                }
+                while (!in.isDone() && !isCancelled()) {
+                    publish(in.readChunk());
+                }
+            }
+            return null;
+        }
+
+        // Вызывается в потоке обработки событий с числом прочитанных точек
+        protected void process(List<Integer> chunks) {
+            // Загрузка уже заменена загрузкой другого файла
+            if (loadTask != this) return;
+            int loaded = chunks.get(chunks.size() - 1);
+            loadProgressBar.setValue((int) (100L * loaded / loader.getPointCount()));
+            // Точки, записанные загрузчиком до publish, становятся видимыми в ряду
+            loader.getSeries().setSize(loaded);
+            if (!shown) {
+                shown = true;
+                // Данные появились - установить флаг загруженности данных
                 fileLoaded = true;
                 // Вызывать метод отображения графика
-                display.showGraphics(graphicsData);
+                display.showGraphics(loader.getSeries(), summary);
+            } else {
+                display.graphicsAppended();
             }
+        }
 
-            in.close();
-        } catch (FileNotFoundException ex) {
-            // В случае исключительной ситуации типа "Файл не найден" показать сообщение об ошибке
-            JOptionPane.showMessageDialog(MainFrame.this, "Указанный  файл не найден", "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
-            return;
-        } catch (IOException ex) {
-            // В случае ошибки ввода из файлового потока показать сообщение об ошибке
-            JOptionPane.showMessageDialog(MainFrame.this, "Ошибка чтения  координат точек из файла", "Ошибка загрузки данных",
-                    JOptionPane.WARNING_MESSAGE);
-            return;
+        protected void done() {
+            if (loadTask != this) return;
+            loadTask = null;
+            loadPanel.setVisible(false);
+            getContentPane().revalidate();
+            // При отмене на графике остаются уже прочитанные точки
+            if (isCancelled()) return;
+            try {
+                get();
+            } catch (ExecutionException ex) {
+                // В случае ошибки ввода из файлового потока показать сообщение об ошибке
+                JOptionPane.showMessageDialog(MainFrame.this, "Ошибка чтения  координат точек из файла", "Ошибка загрузки данных",
+                        JOptionPane.WARNING_MESSAGE);
+                return;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (loader.getTruncatedBytes() > 0) {
+                // Неполная последняя запись отбрасывается, но пользователь должен об этом знать
+                JOptionPane.showMessageDialog(MainFrame.this, "Файл обрывается на неполной записи: последние "
+                                + loader.getTruncatedBytes() + " байт пропущены", "Предупреждение загрузки данных",
+                        JOptionPane.WARNING_MESSAGE);
+            }
+            if (summary == null && loader.getPointCount() >= GraphicsSummary.MIN_POINTS) {
+                writeSummary(file);
+            }
+            // Неполная последняя запись будет прочитана при слежении, когда её допишут
+            if (!loader.isIndexed()) {
+                followedFile = file;
+                followedSeries = loader.getSeries();
+                followedBytes = (long) loader.getLoadedCount() * GraphicsFileLoader.RECORD_SIZE;
+                if (followFileMenuItem.isSelected()) {
+                    startFollowing();
+                }
+            }
+        }
+    }
+
+    // Фоновый импорт текстового файла (метод isCancelled наблюдателя реализован SwingWorker)
+    private class GraphicsImportTask extends SwingWorker<PointSeries, Void> implements TextPointFileImporter.Monitor {
+
+        private final File file;
+        private final TextPointFileImporter importer;
+
+        GraphicsImportTask(File file, TextPointFileImporter importer) {
+            this.file = file;
+            this.importer = importer;
+        }
+
+        protected PointSeries doInBackground() throws IOException {
+            return importer.importFile(file, this);
+        }
+
+        // Вызывается из потоков пула по мере разбора файла
+        public void update(long parsedBytes, long totalBytes) {
+            setProgress((int) Math.min(100, 100 * parsedBytes / Math.max(1, totalBytes)));
+        }
+
+        protected void done() {
+            if (loadTask != this) return;
+            loadTask = null;
+            loadPanel.setVisible(false);
+            getContentPane().revalidate();
+            if (isCancelled()) return;
+            PointSeries series;
+            try {
+                series = get();
+            } catch (ExecutionException ex) {
+                JOptionPane.showMessageDialog(MainFrame.this, "Ошибка импорта точек из файла: "
+                        + ex.getCause().getMessage(), "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+                return;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (series.isEmpty()) {
+                JOptionPane.showMessageDialog(MainFrame.this, "В выбранных столбцах файла нет чисел",
+                        "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            fileLoaded = true;
+            display.showGraphics(series);
+            if (importer.getSkippedLines() > 0) {
+                // Строки без чисел (заголовок, комментарии) пропускаются, но пользователь должен об этом знать
+                JOptionPane.showMessageDialog(MainFrame.this, "Пропущено строк без чисел в выбранных столбцах: "
+                        + importer.getSkippedLines(), "Предупреждение загрузки данных", JOptionPane.WARNING_MESSAGE);
+            }
+        }
+    }
+
+    // Начать слежение за показанным файлом, если он полностью загружен
+    private void startFollowing() {
+        if (followTask != null || followedFile == null) return;
+        followTask = new GraphicsFollowTask(followedFile, followedBytes);
+        followExecutor.execute(followTask);
+    }
+
+    private void stopFollowing() {
+        if (followTask != null) {
+            // Прервать ожидание события об изменении файла
+            followTask.cancel(true);
+            followTask = null;
         }
     }
+
+    // Слежение за файлом: дописанные записи читаются в потоке слежения, а в потоке
+    // обработки событий добавляются в конец показанного ряда, и график дополняется
+    // новыми точками без перечитывания файла
+    private class GraphicsFollowTask extends SwingWorker<Void, PointSeries> {
+
+        private final File file;
+        private final long position;
+
+        GraphicsFollowTask(File file, long position) {
+            this.file = file;
+            this.position = position;
+        }
+
+        protected Void doInBackground() throws IOException {
+            try (GraphicsFileFollower follower = new GraphicsFileFollower(file, position)) {
+                while (!isCancelled()) {
+                    PointSeries appended;
+                    while ((appended = follower.readAppended()) != null) {
+                        publish(appended);
+                    }
+                    follower.awaitChange();
+                }
+            } catch (InterruptedException ex) {
+                // Слежение отменено
+            }
+            return null;
+        }
+
+        // Вызывается в потоке обработки событий с порциями дописанных точек
+        protected void process(List<PointSeries> chunks) {
+            // Слежение уже остановлено или открыт другой файл
+            if (followTask != this) return;
+            for (PointSeries appended : chunks) {
+                followedSeries.addAll(appended);
+                followedBytes += (long) appended.size() * GraphicsFileLoader.RECORD_SIZE;
+            }
+            display.graphicsAppended();
+        }
+
+        protected void done() {
+            if (followTask != this) return;
+            followTask = null;
+            followFileMenuItem.setSelected(false);
+            if (isCancelled()) return;
+            try {
+                get();
+            } catch (ExecutionException ex) {
+                JOptionPane.showMessageDialog(MainFrame.this, "Слежение за файлом остановлено: "
+                        + ex.getCause().getMessage(), "Ошибка загрузки данных", JOptionPane.WARNING_MESSAGE);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     // Класс-слушатель событий, связанных с отображением меню
     private class GraphicsMenuListener implements MenuListener {
 
@@ -168,6 +760,7 @@ public class MainFrame extends JFrame {
             showAxisMenuItem.setEnabled(fileLoaded);
             showMarkersMenuItem.setEnabled(fileLoaded);
             showNullMarkersMenuItem.setEnabled(fileLoaded);
+            showFrameTimeMenuItem.setEnabled(fileLoaded);
         }
 
         // Обработчик, вызываемый после того, как меню исчезло с экрана
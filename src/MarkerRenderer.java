@@ -0,0 +1,179 @@
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.GeneralPath;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Отрисовка маркеров точек штампованием: каждый маркер заданной формы и цвета
+// растрируется один раз в маленькое изображение и затем переносится на холст
+// через drawImage. Карта занятости пикселей позволяет пропускать маркеры,
+// центр которых попадает в уже занятый пиксель - такой маркер всё равно был бы
+// полностью перекрыт маркером той же формы, нарисованным поверх него
+public class MarkerRenderer {
+
+    // Формы маркеров
+    public enum MarkerShape {
+        // Крест в квадрате с разрывами по углам (маркер GraphicsDisplay)
+        CROSS,
+        // Закрашенный круг диаметром 11 пикселей (маркер GraphPanel)
+        CIRCLE
+    }
+
+    // Размер изображения маркера и положение центра маркера в нём
+    private static final int SPRITE_SIZE = 15;
+    private static final int SPRITE_CENTER = 7;
+
+    // Растрированные маркеры по форме и цвету
+    private final Map<MarkerShape, Map<Color, BufferedImage>> sprites = new HashMap<>();
+
+    // Карта занятости пикселей холста (один бит на пиксель)
+    private long[] occupied = new long[0];
+    private int width;
+    private int height;
+
+    // Индексы точек, маркеры которых останутся видимыми
+    private int[] selected = new int[256];
+    private int selectedCount;
+
+    // Начать отбор маркеров для холста размером width x height
+    public void begin(int width, int height) {
+        this.width = Math.max(width, 0);
+        this.height = Math.max(height, 0);
+        int words = (int) (((long) this.width * this.height + 63) >>> 6);
+        if (occupied.length < words) {
+            occupied = new long[words];
+        } else {
+            Arrays.fill(occupied, 0, words, 0L);
+        }
+        selectedCount = 0;
+    }
+
+    // Занять пиксель центра маркера точки index. Возвращает false, если пиксель
+    // уже занят или лежит за пределами холста вместе со всем маркером
+    public boolean claim(int index, double screenX, double screenY) {
+        int x = (int) Math.floor(screenX);
+        int y = (int) Math.floor(screenY);
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            // Центр за краем холста: маркер может быть виден частично, но не перекрывается другими
+            if (x < -SPRITE_CENTER || y < -SPRITE_CENTER
+                    || x >= width + SPRITE_CENTER || y >= height + SPRITE_CENTER) {
+                return false;
+            }
+            select(index);
+            return true;
+        }
+        long cell = (long) y * width + x;
+        int word = (int) (cell >>> 6);
+        long bit = 1L << (cell & 63);
+        if ((occupied[word] & bit) != 0) {
+            return false;
+        }
+        occupied[word] |= bit;
+        select(index);
+        return true;
+    }
+
+    // Не пройдёт ли claim ни одна точка с центром в прямоугольнике [left, right] x
+    // [top, bottom]: все его пиксели на холсте заняты, а за краем холста он не
+    // задевает полосу, где маркер виден частично. Неопределённые границы (NaN) - false
+    public boolean isCovered(double left, double top, double right, double bottom) {
+        if (!(left <= right && top <= bottom)) return false;
+        // Границы, за которыми claim отбрасывает маркер целиком
+        int minX = (int) Math.max(-SPRITE_CENTER, Math.floor(left));
+        int maxX = (int) Math.min(width + SPRITE_CENTER - 1, Math.floor(right));
+        int minY = (int) Math.max(-SPRITE_CENTER, Math.floor(top));
+        int maxY = (int) Math.min(height + SPRITE_CENTER - 1, Math.floor(bottom));
+        if (minX > maxX || minY > maxY) return true;
+        if (minX < 0 || minY < 0 || maxX >= width || maxY >= height) return false;
+        for (int y = minY; y <= maxY; y++) {
+            long first = (long) y * width + minX;
+            long last = (long) y * width + maxX;
+            int firstWord = (int) (first >>> 6);
+            int lastWord = (int) (last >>> 6);
+            for (int word = firstWord; word <= lastWord; word++) {
+                long mask = -1L;
+                if (word == firstWord) {
+                    mask &= -1L << (first & 63);
+                }
+                if (word == lastWord) {
+                    mask &= -1L >>> (63 - (last & 63));
+                }
+                if ((occupied[word] & mask) != mask) return false;
+            }
+        }
+        return true;
+    }
+
+    private void select(int index) {
+        if (selectedCount == selected.length) {
+            selected = Arrays.copyOf(selected, selectedCount * 2);
+        }
+        selected[selectedCount++] = index;
+    }
+
+    // Число отобранных маркеров и индекс k-го из них (в порядке вызовов claim)
+    public int getSelectedCount() {
+        return selectedCount;
+    }
+
+    public int getSelected(int k) {
+        return selected[k];
+    }
+
+    // Перенести маркер на холст так, чтобы его центр попал в точку (screenX, screenY)
+    public void stamp(Graphics2D canvas, BufferedImage sprite, double screenX, double screenY) {
+        canvas.drawImage(sprite, (int) Math.floor(screenX) - SPRITE_CENTER,
+                (int) Math.floor(screenY) - SPRITE_CENTER, null);
+    }
+
+    // Изображение маркера заданной формы и цвета (растрируется при первом обращении)
+    public BufferedImage getSprite(MarkerShape shape, Color color) {
+        return sprites.computeIfAbsent(shape, key -> new HashMap<>())
+                .computeIfAbsent(color, key -> renderSprite(shape, color));
+    }
+
+    // Маркеры заданной формы для всех классов точек: k-й элемент - маркер класса k
+    // в цвете, который ему назначает классификатор
+    public BufferedImage[] getSprites(MarkerShape shape, PointClassifier classifier) {
+        BufferedImage[] classSprites = new BufferedImage[classifier.getClassCount()];
+        for (int k = 0; k < classSprites.length; k++) {
+            classSprites[k] = getSprite(shape, classifier.getColor((byte) k));
+        }
+        return classSprites;
+    }
+
+    private static BufferedImage renderSprite(MarkerShape shape, Color color) {
+        BufferedImage sprite = new BufferedImage(SPRITE_SIZE, SPRITE_SIZE, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D canvas = sprite.createGraphics();
+        canvas.setColor(color);
+        // Центр пикселя (SPRITE_CENTER, SPRITE_CENTER) соответствует точке с дробной частью 0.5
+        double center = SPRITE_CENTER + 0.5;
+        if (shape == MarkerShape.CROSS) {
+            canvas.setStroke(new BasicStroke(1.0f, BasicStroke.CAP_BUTT,
+                    BasicStroke.JOIN_MITER, 10.0f, null, 0.0f));
+            GeneralPath marker = new GeneralPath();
+            marker.moveTo(center + 5.5, center);
+            marker.lineTo(center - 5.5, center);
+            marker.moveTo(center, center + 5.5);
+            marker.lineTo(center, center - 5.5);
+            marker.moveTo(center + 5.5, center + 4);
+            marker.lineTo(center + 5.5, center - 4);
+            marker.moveTo(center - 5.5, center + 4);
+            marker.lineTo(center - 5.5, center - 4);
+            marker.moveTo(center + 4, center + 5.5);
+            marker.lineTo(center - 4, center + 5.5);
+            marker.moveTo(center + 4, center - 5.5);
+            marker.lineTo(center - 4, center - 5.5);
+            canvas.draw(marker);
+        } else {
+            // Круг 11x11 с левым верхним углом на 5 пикселей левее и выше центра
+            canvas.fill(new Ellipse2D.Double(SPRITE_CENTER - 5, SPRITE_CENTER - 5, 11, 11));
+        }
+        canvas.dispose();
+        return sprite;
+    }
+}
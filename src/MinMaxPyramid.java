@@ -0,0 +1,275 @@
+import java.util.Arrays;
+
+// Пирамида минимумов/максимумов ряда точек для быстрого прореживания любой
+// видимой области. Уровень k делит ряд на блоки по BASE * 2^k точек и хранит
+// для каждого блока индексы точек с минимальным и максимальным Y.
+// Пирамида достраивается при добавлении точек в конец ряда (extend)
+public class MinMaxPyramid {
+
+    // Число точек в блоке нулевого уровня
+    private static final int BASE = 16;
+
+    private final PointSeries series;
+
+    // Индексы минимальной и максимальной точек каждого блока по уровням
+    private int[][] minIndex = new int[0][];
+    private int[][] maxIndex = new int[0][];
+    // Число заполненных блоков на каждом уровне
+    private int[] blockCount = new int[0];
+
+    // Число точек ряда, уже учтённых в пирамиде
+    private int indexed;
+    // Упорядочен ли ряд по X (без этого блоки нельзя сопоставлять столбцам)
+    private boolean xSorted = true;
+
+    // Состояние текущего столбца при прореживании
+    private double column;
+    private int first;
+    private int last;
+    private int columnMin;
+    private int columnMax;
+    private boolean columnOpen;
+    private double queryMinX;
+    private double queryScale;
+    private PointSeries out;
+    // Индексы в ряду точек, выведенных последним прореживанием
+    private int[] outIndices = new int[0];
+
+    public MinMaxPyramid(PointSeries series) {
+        this.series = series;
+        extend();
+    }
+
+    public boolean isXSorted() {
+        return xSorted;
+    }
+
+    // Число уровней и блоков уровня; блок b уровня level - точки
+    // [b * getBlockSize(level), (b + 1) * getBlockSize(level))
+    public int getLevelCount() {
+        return blockCount.length;
+    }
+
+    public int getBlockCount(int level) {
+        return blockCount[level];
+    }
+
+    public int getBlockSize(int level) {
+        return BASE << level;
+    }
+
+    // Индексы точек с минимальным и максимальным Y в блоке
+    public int getMinIndex(int level, int b) {
+        return minIndex[level][b];
+    }
+
+    public int getMaxIndex(int level, int b) {
+        return maxIndex[level][b];
+    }
+
+    // Индекс в ряду k-й точки, выведенной последним прореживанием
+    public int getDecimatedIndex(int k) {
+        return outIndices[k];
+    }
+
+    // Учесть точки, добавленные в ряд после предыдущего вызова
+    public void extend() {
+        int size = series.size();
+        for (int i = Math.max(indexed, 1); i < size; i++) {
+            if (series.getX(i) < series.getX(i - 1)) {
+                xSorted = false;
+                break;
+            }
+        }
+        indexed = size;
+
+        int levels = 0;
+        while ((long) BASE << levels <= size) {
+            levels++;
+        }
+        if (levels > blockCount.length) {
+            minIndex = Arrays.copyOf(minIndex, levels);
+            maxIndex = Arrays.copyOf(maxIndex, levels);
+            blockCount = Arrays.copyOf(blockCount, levels);
+            for (int level = 0; level < levels; level++) {
+                if (minIndex[level] == null) {
+                    minIndex[level] = new int[0];
+                    maxIndex[level] = new int[0];
+                }
+            }
+        }
+
+        for (int level = 0; level < levels; level++) {
+            int blocks = (int) (size / ((long) BASE << level));
+            ensureCapacity(level, blocks);
+            for (int b = blockCount[level]; b < blocks; b++) {
+                if (level == 0) {
+                    indexBlock(b);
+                } else {
+                    mergeBlocks(level, b);
+                }
+            }
+            blockCount[level] = blocks;
+        }
+    }
+
+    private void ensureCapacity(int level, int blocks) {
+        if (minIndex[level].length < blocks) {
+            int capacity = Math.max(blocks, minIndex[level].length * 3 / 2 + 1);
+            minIndex[level] = Arrays.copyOf(minIndex[level], capacity);
+            maxIndex[level] = Arrays.copyOf(maxIndex[level], capacity);
+        }
+    }
+
+    // Блок нулевого уровня строится по самим точкам
+    private void indexBlock(int b) {
+        int start = b * BASE;
+        int min = start;
+        int max = start;
+        for (int i = start + 1; i < start + BASE; i++) {
+            double y = series.getY(i);
+            if (y < series.getY(min)) {
+                min = i;
+            }
+            if (y > series.getY(max)) {
+                max = i;
+            }
+        }
+        minIndex[0][b] = min;
+        maxIndex[0][b] = max;
+    }
+
+    // Блок уровня level объединяет два соседних блока предыдущего уровня
+    private void mergeBlocks(int level, int b) {
+        int[] childMin = minIndex[level - 1];
+        int[] childMax = maxIndex[level - 1];
+        int left = 2 * b;
+        int right = left + 1;
+        minIndex[level][b] = series.getY(childMin[right]) < series.getY(childMin[left])
+                ? childMin[right] : childMin[left];
+        maxIndex[level][b] = series.getY(childMax[right]) > series.getY(childMax[left])
+                ? childMax[right] : childMax[left];
+    }
+
+    // Прореживание точек [from, to) по столбцам пикселей с тем же результатом,
+    // что и M4Decimator.decimate, но за O(число столбцов * log N) операций.
+    // Неупорядоченный по X ряд прореживается по точкам, как в M4Decimator
+    public void decimate(int from, int to, double minX, double scale, PointSeries out) {
+        out.clear();
+        this.out = out;
+        this.queryMinX = minX;
+        this.queryScale = scale;
+        columnOpen = false;
+
+        // Подобрать уровень, блоки которого в несколько раз мельче столбца
+        int level = -1;
+        if (xSorted && to - from >= 2) {
+            double columns = Math.max(1.0, (series.getX(to - 1) - series.getX(from)) * scale);
+            double pointsPerColumn = (to - from) / columns;
+            while (level + 1 < blockCount.length && ((long) BASE << (level + 1)) * 4 <= pointsPerColumn) {
+                level++;
+            }
+        }
+        process(level, from, to);
+        flushColumn();
+        this.out = null;
+    }
+
+    private void process(int level, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        if (level < 0) {
+            for (int i = from; i < to; i++) {
+                feed(columnOf(i), i, i, i, i);
+            }
+            return;
+        }
+        int size = BASE << level;
+        int firstBlock = (from + size - 1) / size;
+        int endBlock = Math.min(to / size, blockCount[level]);
+        if (firstBlock >= endBlock) {
+            process(level - 1, from, to);
+            return;
+        }
+        process(level - 1, from, firstBlock * size);
+        for (int b = firstBlock; b < endBlock; b++) {
+            processBlock(level, b);
+        }
+        process(level - 1, endBlock * size, to);
+    }
+
+    // Блок целиком в одном столбце учитывается сразу, иначе - по половинам
+    private void processBlock(int level, int b) {
+        int size = BASE << level;
+        int start = b * size;
+        int end = start + size - 1;
+        double startColumn = columnOf(start);
+        if (startColumn == columnOf(end)) {
+            feed(startColumn, start, end, minIndex[level][b], maxIndex[level][b]);
+        } else if (level == 0) {
+            for (int i = start; i <= end; i++) {
+                feed(columnOf(i), i, i, i, i);
+            }
+        } else {
+            processBlock(level - 1, 2 * b);
+            processBlock(level - 1, 2 * b + 1);
+        }
+    }
+
+    private double columnOf(int i) {
+        return Math.floor((series.getX(i) - queryMinX) * queryScale);
+    }
+
+    private void feed(double unitColumn, int unitFirst, int unitLast, int unitMin, int unitMax) {
+        if (columnOpen && unitColumn == column) {
+            last = unitLast;
+            if (series.getY(unitMin) < series.getY(columnMin)) {
+                columnMin = unitMin;
+            }
+            if (series.getY(unitMax) > series.getY(columnMax)) {
+                columnMax = unitMax;
+            }
+            return;
+        }
+        flushColumn();
+        column = unitColumn;
+        first = unitFirst;
+        last = unitLast;
+        columnMin = unitMin;
+        columnMax = unitMax;
+        columnOpen = true;
+    }
+
+    // Вывести первую, экстремальные и последнюю точки столбца по возрастанию индекса
+    private void flushColumn() {
+        if (!columnOpen) {
+            return;
+        }
+        emit(first);
+        int previous = first;
+        int lower = Math.min(columnMin, columnMax);
+        int upper = Math.max(columnMin, columnMax);
+        if (lower > previous) {
+            emit(lower);
+            previous = lower;
+        }
+        if (upper > previous) {
+            emit(upper);
+            previous = upper;
+        }
+        if (last > previous) {
+            emit(last);
+        }
+        columnOpen = false;
+    }
+
+    private void emit(int i) {
+        int k = out.size();
+        if (k == outIndices.length) {
+            outIndices = Arrays.copyOf(outIndices, Math.max(16, k * 2));
+        }
+        outIndices[k] = i;
+        out.add(series.getX(i), series.getY(i));
+    }
+}
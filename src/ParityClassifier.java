@@ -0,0 +1,20 @@
+import java.awt.Color;
+
+// Выделение точек по чётности целой части Y: чётные - чёрным, нечётные - красным
+public class ParityClassifier implements PointClassifier {
+
+    public static final byte EVEN = 0;
+    public static final byte ODD = 1;
+
+    public int getClassCount() {
+        return 2;
+    }
+
+    public byte classify(double x, double y) {
+        return ((int) y) % 2 == 0 ? EVEN : ODD;
+    }
+
+    public Color getColor(byte pointClass) {
+        return pointClass == EVEN ? Color.BLACK : Color.RED;
+    }
+}
@@ -0,0 +1,148 @@
+import java.awt.BasicStroke;
+import java.awt.geom.AffineTransform;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Длина ломаной через точки ряда на экране - для фазы пунктира участка ломаной,
+// который рисуется отдельно от остальных (полосы многопоточной отрисовки, участки
+// прореженного графика). Суммы длин по блокам считаются один раз на ряд, а не
+// проходом от точки 0 при каждой перерисовке, и досчитываются при добавлении точек
+public class PathLengths {
+
+    // Число точек в блоке сумм длин ряда
+    private static final int PREFIX_BLOCK = 256;
+
+    // Число блоков сумм длин, обрабатываемых одной задачей
+    private static final int SEQUENTIAL_BLOCKS = 256;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // Длина ломаной ряда prefixSeries от точки 0 до первой точки каждого блока из
+    // PREFIX_BLOCK точек (prefixBlocks сумм). Длины считаются после линейной части
+    // преобразования prefixLinear; равномерный масштаб в неё не входит и применяется
+    // при обращении, поэтому при масштабировании и сдвиге суммы остаются верными
+    private PointSeries prefixSeries;
+    private final double[] prefixLinear = new double[4];
+    private double[] prefixLengths = new double[0];
+    private int prefixBlocks;
+
+    // Длина ломаной ряда на экране от точки 0 до точки index: сумма длин до начала
+    // блока точки и длины не более PREFIX_BLOCK отрезков. Выравнивание координат
+    // здесь не учитывается - оно лишь сдвигает рисунок пунктира всей видимой области
+    public double lengthTo(PointSeries series, int index, AffineTransform transform) {
+        if (index == 0) return 0;
+        double m00 = transform.getScaleX();
+        double m01 = transform.getShearX();
+        double m10 = transform.getShearY();
+        double m11 = transform.getScaleY();
+        // Равномерный масштаб (с отражением) умножает все длины на одно число
+        double factor = 1;
+        if (m01 == 0 && m10 == 0 && Math.abs(m00) == Math.abs(m11)) {
+            factor = Math.abs(m00);
+            m00 = m11 = 1;
+        }
+        updatePrefix(series, m00, m01, m10, m11);
+        int block = Math.min(index / PREFIX_BLOCK, prefixBlocks - 1);
+        double length = prefixLengths[block];
+        for (int i = block * PREFIX_BLOCK + 1; i <= index; i++) {
+            length += linearDistance(series, i);
+        }
+        return factor * length;
+    }
+
+    // Досчитать суммы длин по блокам для добавленных в ряд точек (или посчитать
+    // заново для другого ряда или другой линейной части преобразования)
+    private void updatePrefix(PointSeries series, double m00, double m01, double m10, double m11) {
+        int size = series.size();
+        int blocks = (size + PREFIX_BLOCK - 1) / PREFIX_BLOCK;
+        if (series != prefixSeries || prefixLinear[0] != m00 || prefixLinear[1] != m01
+                || prefixLinear[2] != m10 || prefixLinear[3] != m11
+                || blocks < prefixBlocks) {
+            prefixSeries = series;
+            prefixLinear[0] = m00;
+            prefixLinear[1] = m01;
+            prefixLinear[2] = m10;
+            prefixLinear[3] = m11;
+            prefixBlocks = 0;
+        }
+        // Сумма блока зависит только от точек до его начала, поэтому при добавлении
+        // точек считаются лишь суммы новых блоков
+        if (blocks <= prefixBlocks) return;
+        if (prefixLengths.length < blocks) {
+            prefixLengths = Arrays.copyOf(prefixLengths, Math.max(blocks, prefixLengths.length * 3 / 2));
+        }
+        int first = Math.max(1, prefixBlocks);
+        pool.invoke(new PrefixTask(series, first, blocks));
+        if (prefixBlocks == 0) {
+            prefixLengths[0] = 0;
+        }
+        for (int b = first; b < blocks; b++) {
+            prefixLengths[b] += prefixLengths[b - 1];
+        }
+        prefixBlocks = blocks;
+    }
+
+    // Длина отрезка, заканчивающегося точкой i ряда prefixSeries, после линейной части преобразования
+    private double linearDistance(PointSeries series, int i) {
+        double dx = series.getX(i) - series.getX(i - 1);
+        double dy = series.getY(i) - series.getY(i - 1);
+        double x = prefixLinear[0] * dx + prefixLinear[1] * dy;
+        double y = prefixLinear[2] * dx + prefixLinear[3] * dy;
+        return Math.sqrt(x * x + y * y);
+    }
+
+    // Длины предыдущих блоков [from, to) сумм длин ряда: prefixLengths[b] получает
+    // длину ломаной от первой точки блока b - 1 до первой точки блока b
+    @SuppressWarnings("serial")
+    private class PrefixTask extends RecursiveAction {
+        private final PointSeries series;
+        private final int from;
+        private final int to;
+
+        PrefixTask(PointSeries series, int from, int to) {
+            this.series = series;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from > SEQUENTIAL_BLOCKS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PrefixTask(series, from, middle), new PrefixTask(series, middle, to));
+                return;
+            }
+            for (int b = from; b < to; b++) {
+                double length = 0;
+                for (int i = (b - 1) * PREFIX_BLOCK + 1; i <= b * PREFIX_BLOCK; i++) {
+                    length += linearDistance(series, i);
+                }
+                prefixLengths[b] = length;
+            }
+        }
+    }
+
+    // Длина, через которую повторяется рисунок пунктира пера (0 - сплошное перо)
+    public static double dashPeriod(BasicStroke stroke) {
+        float[] dash = stroke.getDashArray();
+        if (dash == null) return 0;
+        double period = 0;
+        for (float d : dash) {
+            period += d;
+        }
+        // Нечётное число длин повторяется дважды, прежде чем рисунок совпадёт
+        if (dash.length % 2 == 1) {
+            period *= 2;
+        }
+        return period;
+    }
+
+    // Перо, пунктир которого начинается с отступа length от начала ломаной
+    public static BasicStroke withPhase(BasicStroke stroke, double length) {
+        float[] dash = stroke.getDashArray();
+        if (dash == null) return stroke;
+        double phase = (stroke.getDashPhase() + length) % dashPeriod(stroke);
+        return new BasicStroke(stroke.getLineWidth(), stroke.getEndCap(), stroke.getLineJoin(),
+                stroke.getMiterLimit(), dash, (float) phase);
+    }
+}
@@ -0,0 +1,163 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Сводные счётчики загрузки и отрисовки графиков всего приложения. Загрузка
+// отмечается в потоках загрузки, отрисовка - в потоке обработки событий (или в
+// рабочих потоках пакетной отрисовки), поэтому все значения атомарны.
+// Экземпляр один; при первом обращении он регистрируется как MXBean
+public class PlotMetrics implements PlotMetricsMXBean {
+
+    // Слои GraphicsDisplay
+    public static final int AXIS = 0;
+    public static final int GRAPHICS = 1;
+    public static final int MARKERS = 2;
+    public static final int NULL_MARKERS = 3;
+
+    private static final String[] LAYER_NAMES = {"axis", "graphics", "markers", "nullMarkers"};
+
+    private static final String OBJECT_NAME = "graphics:type=PlotMetrics";
+
+    private static final PlotMetrics INSTANCE = register(new PlotMetrics());
+
+    private final AtomicLong filesLoaded = new AtomicLong();
+    private final AtomicLong bytesLoaded = new AtomicLong();
+    private final AtomicLong pointsLoaded = new AtomicLong();
+    // Последняя загрузка: время в наносекундах, размер и число точек
+    private volatile long lastLoadNanos;
+    private volatile long lastLoadBytes;
+    private volatile long lastLoadPoints;
+
+    private final AtomicLong framesPainted = new AtomicLong();
+    private volatile long lastFrameNanos;
+    private final AtomicLong maxFrameNanos = new AtomicLong();
+
+    private final AtomicLongArray layerNanos = new AtomicLongArray(LAYER_NAMES.length);
+    private final AtomicLongArray layerPointsDrawn = new AtomicLongArray(LAYER_NAMES.length);
+
+    private PlotMetrics() {
+    }
+
+    public static PlotMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    private static PlotMetrics register(PlotMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException ex) {
+            // Без JMX счётчики по-прежнему доступны в приложении и через JFR
+        }
+        return metrics;
+    }
+
+    // Имя слоя для событий и надписей
+    public static String getLayerName(int layer) {
+        return LAYER_NAMES[layer];
+    }
+
+    // Отметить завершённую загрузку файла
+    public void fileLoaded(long bytes, long points, long nanos) {
+        filesLoaded.incrementAndGet();
+        bytesLoaded.addAndGet(bytes);
+        pointsLoaded.addAndGet(points);
+        lastLoadBytes = bytes;
+        lastLoadPoints = points;
+        lastLoadNanos = nanos;
+    }
+
+    // Отметить перерисовку слоя
+    public void layerPainted(int layer, long nanos, long pointsDrawn) {
+        layerNanos.set(layer, nanos);
+        layerPointsDrawn.set(layer, pointsDrawn);
+    }
+
+    // Отметить отрисованный кадр
+    public void framePainted(long nanos) {
+        framesPainted.incrementAndGet();
+        lastFrameNanos = nanos;
+        maxFrameNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getFilesLoaded() {
+        return filesLoaded.get();
+    }
+
+    public long getBytesLoaded() {
+        return bytesLoaded.get();
+    }
+
+    public long getPointsLoaded() {
+        return pointsLoaded.get();
+    }
+
+    public double getLastLoadMillis() {
+        return toMillis(lastLoadNanos);
+    }
+
+    public double getLastLoadMegabytesPerSecond() {
+        return megabytesPerSecond(lastLoadBytes, lastLoadNanos);
+    }
+
+    public double getLastLoadPointsPerSecond() {
+        return perSecond(lastLoadPoints, lastLoadNanos);
+    }
+
+    public long getFramesPainted() {
+        return framesPainted.get();
+    }
+
+    public double getLastFrameMillis() {
+        return toMillis(lastFrameNanos);
+    }
+
+    public double getMaxFrameMillis() {
+        return toMillis(maxFrameNanos.get());
+    }
+
+    public double getLastAxisMillis() {
+        return toMillis(layerNanos.get(AXIS));
+    }
+
+    public double getLastGraphicsMillis() {
+        return toMillis(layerNanos.get(GRAPHICS));
+    }
+
+    public double getLastMarkersMillis() {
+        return toMillis(layerNanos.get(MARKERS));
+    }
+
+    public double getLastNullMarkersMillis() {
+        return toMillis(layerNanos.get(NULL_MARKERS));
+    }
+
+    public long getLastGraphicsPointsDrawn() {
+        return layerPointsDrawn.get(GRAPHICS);
+    }
+
+    public long getLastMarkersDrawn() {
+        return layerPointsDrawn.get(MARKERS);
+    }
+
+    public long getLastNullMarkersDrawn() {
+        return layerPointsDrawn.get(NULL_MARKERS);
+    }
+
+    public void resetMaxFrameMillis() {
+        maxFrameNanos.set(0);
+    }
+
+    public static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    public static double perSecond(long count, long nanos) {
+        return nanos > 0 ? count * 1e9 / nanos : 0;
+    }
+
+    public static double megabytesPerSecond(long bytes, long nanos) {
+        return perSecond(bytes, nanos) / (1 << 20);
+    }
+}
@@ -0,0 +1,44 @@
+// Счётчики загрузки и отрисовки графиков, доступные через JMX
+// (объект graphics:type=PlotMetrics). Времена - в миллисекундах
+public interface PlotMetricsMXBean {
+
+    // Загрузка файлов
+    long getFilesLoaded();
+
+    long getBytesLoaded();
+
+    long getPointsLoaded();
+
+    double getLastLoadMillis();
+
+    double getLastLoadMegabytesPerSecond();
+
+    double getLastLoadPointsPerSecond();
+
+    // Отрисовка кадров
+    long getFramesPainted();
+
+    double getLastFrameMillis();
+
+    double getMaxFrameMillis();
+
+    // Время последней перерисовки каждого слоя
+    double getLastAxisMillis();
+
+    double getLastGraphicsMillis();
+
+    double getLastMarkersMillis();
+
+    double getLastNullMarkersMillis();
+
+    // Число точек, нарисованных при последней перерисовке слоя (после прореживания
+    // и отбора перекрытых маркеров)
+    long getLastGraphicsPointsDrawn();
+
+    long getLastMarkersDrawn();
+
+    long getLastNullMarkersDrawn();
+
+    // Сбросить наибольшее время кадра
+    void resetMaxFrameMillis();
+}
@@ -0,0 +1,18 @@
+import java.awt.Color;
+
+// Правило выделения точек графика: относит точку к одному из нескольких классов,
+// а каждому классу сопоставляет цвет маркера. Класс точки вычисляется один раз,
+// когда точка попадает в график, и хранится в массиве byte, поэтому правило
+// может быть сколь угодно сложным - на скорость перерисовки оно не влияет.
+// Метод classify может вызываться одновременно из нескольких потоков
+public interface PointClassifier {
+
+    // Число классов; classify возвращает значения от 0 до getClassCount() - 1
+    int getClassCount();
+
+    // Класс точки (x, y)
+    byte classify(double x, double y);
+
+    // Цвет маркера точек класса pointClass
+    Color getColor(byte pointClass);
+}
@@ -0,0 +1,308 @@
+import java.util.Arrays;
+
+// Поиск точки ряда, ближайшей к курсору. Для ряда, упорядоченного по X, двоичным
+// поиском находятся точки в пределах радиуса по горизонтали. Если у ряда есть
+// пирамида минимумов/максимумов, её блоки, которые по границам X и Y не могут
+// содержать точки ближе найденной, пропускаются целиком - в плотном ряду (тысячи
+// точек на пиксель) просматривается лишь несколько блоков у курсора.
+// Для неупорядоченного ряда строится равномерная сетка: каждая ячейка хранит
+// список своих точек, и просматриваются только ячейки вокруг курсора. Точки,
+// добавленные в конец ряда, вносятся в сетку при следующем поиске; сетка строится
+// заново, лишь когда точки выходят за её границы или их становится намного больше,
+// чем ячеек, - и сразу с запасом, поэтому перестройки редки
+public class PointPicker {
+
+    // Число точек по обе стороны от курсора, которые просматриваются до обхода блоков
+    // пирамиды: найденная среди них точка позволяет сразу отбросить дальние блоки
+    private static final int SEED_POINTS = 64;
+
+    // Среднее число точек в ячейке сетки при её построении
+    private static final int POINTS_PER_CELL = 4;
+
+    // Наибольшее число ячеек сетки
+    private static final int MAX_CELLS = 1 << 22;
+
+    private final PointSeries series;
+    private final boolean xSorted;
+    // Пирамида упорядоченного ряда (null - точки просматриваются подряд)
+    private final MinMaxPyramid pyramid;
+
+    // Состояние текущего поиска: курсор, масштаб и лучшая точка
+    private double queryX;
+    private double queryY;
+    private double queryScaleX;
+    private double queryScaleY;
+    private int best;
+    private double bestDistance;
+
+    // Сетка: границы, число ячеек по осям, первая точка каждой ячейки и следующая
+    // точка той же ячейки для каждой точки (-1 - конец списка)
+    private double gridMinX;
+    private double gridMinY;
+    private double cellWidth;
+    private double cellHeight;
+    private int columns;
+    private int rows;
+    private int[] heads = new int[0];
+    private int[] next = new int[0];
+    // Число точек ряда, уже внесённых в сетку
+    private int indexed;
+
+    public PointPicker(PointSeries series, boolean xSorted) {
+        this.series = series;
+        this.xSorted = xSorted;
+        this.pyramid = null;
+    }
+
+    // Поиск по ряду с пирамидой (упорядоченность ряда берётся из неё)
+    public PointPicker(PointSeries series, MinMaxPyramid pyramid) {
+        this.series = series;
+        this.xSorted = pyramid.isXSorted();
+        this.pyramid = xSorted ? pyramid : null;
+    }
+
+    public boolean isXSorted() {
+        return xSorted;
+    }
+
+    // Номер точки, ближайшей к (x, y) на экране, или -1, если ближе radius пикселей
+    // точек нет. scaleX и scaleY - число пикселей в единице данных по осям. Из точек
+    // на одном расстоянии выбирается последняя - она нарисована поверх остальных
+    public int nearest(double x, double y, double scaleX, double scaleY, double radius) {
+        if (series.isEmpty()) return -1;
+        return xSorted ? nearestSorted(x, y, scaleX, scaleY, radius)
+                : nearestInGrid(x, y, scaleX, scaleY, radius);
+    }
+
+    private int nearestSorted(double x, double y, double scaleX, double scaleY, double radius) {
+        queryX = x;
+        queryY = y;
+        queryScaleX = scaleX;
+        queryScaleY = scaleY;
+        best = -1;
+        bestDistance = radius * radius;
+        // Точки в пределах радиуса по горизонтали
+        double rx = radius / scaleX;
+        int from = series.lowerBoundX(x - rx);
+        int to = series.upperBoundX(x + rx);
+        if (pyramid == null) {
+            scan(from, to);
+        } else {
+            int cursor = series.lowerBoundX(x);
+            scan(Math.max(from, cursor - SEED_POINTS), Math.min(to, cursor + SEED_POINTS));
+            search(pyramid.getLevelCount() - 1, from, to);
+        }
+        return best;
+    }
+
+    // Участок [from, to): целые блоки уровня level и остатки по краям - блоками
+    // уровнем ниже (как при прореживании пирамидой)
+    private void search(int level, int from, int to) {
+        if (from >= to) return;
+        if (level < 0) {
+            scan(from, to);
+            return;
+        }
+        int size = pyramid.getBlockSize(level);
+        int firstBlock = (from + size - 1) / size;
+        int endBlock = Math.min(to / size, pyramid.getBlockCount(level));
+        if (firstBlock >= endBlock) {
+            search(level - 1, from, to);
+            return;
+        }
+        search(level - 1, from, firstBlock * size);
+        for (int b = firstBlock; b < endBlock; b++) {
+            searchBlock(level, b);
+        }
+        search(level - 1, endBlock * size, to);
+    }
+
+    // Блок пропускается, если прямоугольник его границ дальше лучшей точки; иначе
+    // первой просматривается половина, ближайшая к курсору по X
+    private void searchBlock(int level, int b) {
+        int size = pyramid.getBlockSize(level);
+        int start = b * size;
+        int end = start + size - 1;
+        double dx = gap(queryX, series.getX(start), series.getX(end)) * queryScaleX;
+        double dy = gap(queryY, series.getY(pyramid.getMinIndex(level, b)),
+                series.getY(pyramid.getMaxIndex(level, b))) * queryScaleY;
+        // Неопределённые границы (NaN) блок не отбрасывают
+        if (dx * dx + dy * dy > bestDistance) return;
+        if (level == 0) {
+            scan(start, end + 1);
+        } else if (queryX < series.getX(start + size / 2)) {
+            searchBlock(level - 1, 2 * b);
+            searchBlock(level - 1, 2 * b + 1);
+        } else {
+            searchBlock(level - 1, 2 * b + 1);
+            searchBlock(level - 1, 2 * b);
+        }
+    }
+
+    // Расстояние от value до отрезка [low, high] (0 - внутри)
+    private static double gap(double value, double low, double high) {
+        return Math.max(0, Math.max(low - value, value - high));
+    }
+
+    private void scan(int from, int to) {
+        for (int i = from; i < to; i++) {
+            double dx = (series.getX(i) - queryX) * queryScaleX;
+            double dy = (series.getY(i) - queryY) * queryScaleY;
+            double distance = dx * dx + dy * dy;
+            if (distance <= bestDistance && (distance < bestDistance || i > best)) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+    }
+
+    private int nearestInGrid(double x, double y, double scaleX, double scaleY, double radius) {
+        updateGrid();
+        // Ячейки, пересекающиеся с прямоугольником радиуса вокруг курсора
+        double rx = radius / scaleX;
+        double ry = radius / scaleY;
+        int fromColumn = column(x - rx);
+        int toColumn = column(x + rx);
+        int fromRow = row(y - ry);
+        int toRow = row(y + ry);
+        int centerColumn = column(x);
+        int centerRow = row(y);
+        // Ширина ячейки на экране: точки кольца ring+1 вокруг ячейки курсора не ближе
+        // ring таких ширин
+        // (если курсор за границами сетки, это неверно, и просматриваются все кольца)
+        double cellPixels = x >= gridMinX && x < gridMinX + columns * cellWidth
+                && y >= gridMinY && y < gridMinY + rows * cellHeight
+                ? Math.min(cellWidth * scaleX, cellHeight * scaleY) : 0;
+        int rings = Math.max(Math.max(centerColumn - fromColumn, toColumn - centerColumn),
+                Math.max(centerRow - fromRow, toRow - centerRow));
+        int best = -1;
+        double bestDistance = radius * radius;
+        // Кольца ячеек от ячейки курсора наружу, пока следующее кольцо может содержать
+        // точку ближе найденной
+        for (int ring = 0; ring <= rings; ring++) {
+            int top = Math.max(fromRow, centerRow - ring);
+            int bottom = Math.min(toRow, centerRow + ring);
+            int left = Math.max(fromColumn, centerColumn - ring);
+            int right = Math.min(toColumn, centerColumn + ring);
+            for (int r = top; r <= bottom; r++) {
+                boolean edgeRow = r == centerRow - ring || r == centerRow + ring;
+                // В средних строках кольца - только крайние ячейки
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int c = edgeRow ? left : centerColumn - ring; c <= right; c += step) {
+                    if (c < left) continue;
+                    for (int i = heads[r * columns + c]; i >= 0; i = next[i]) {
+                        double dx = (series.getX(i) - x) * scaleX;
+                        double dy = (series.getY(i) - y) * scaleY;
+                        double distance = dx * dx + dy * dy;
+                        if (distance <= bestDistance && (distance < bestDistance || i > best)) {
+                            best = i;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+            double reach = ring * cellPixels;
+            if (best >= 0 && reach * reach > bestDistance) break;
+        }
+        return best;
+    }
+
+    // Внести в сетку добавленные точки (или построить её заново)
+    private void updateGrid() {
+        int size = series.size();
+        if (size < indexed) {
+            // Ряд заменён более коротким - его точки уже не те
+            indexed = 0;
+            heads = new int[0];
+        }
+        if (heads.length == 0 || (long) size > 4L * heads.length * POINTS_PER_CELL && heads.length < MAX_CELLS) {
+            buildGrid();
+            return;
+        }
+        if (next.length < size) {
+            next = Arrays.copyOf(next, Math.max(size, next.length + (next.length >> 1)));
+        }
+        double maxX = gridMinX + columns * cellWidth;
+        double maxY = gridMinY + rows * cellHeight;
+        for (int i = indexed; i < size; i++) {
+            double x = series.getX(i);
+            double y = series.getY(i);
+            // Бесконечные координаты сетку не расширяют - такие точки попадают в крайние ячейки
+            if (Double.isFinite(x) && Double.isFinite(y)
+                    && (x < gridMinX || x > maxX || y < gridMinY || y > maxY)) {
+                buildGrid();
+                return;
+            }
+            insert(i, x, y);
+        }
+        indexed = size;
+    }
+
+    // Построить сетку по всем точкам ряда. Границы сетки вдвое шире границ точек,
+    // а ячеек вдвое больше, чем нужно сейчас, - с запасом для новых точек
+    private void buildGrid() {
+        int size = series.size();
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        // Бесконечные и неопределённые координаты в границы не входят
+        for (int i = 0; i < size; i++) {
+            double x = series.getX(i);
+            double y = series.getY(i);
+            if (Double.isFinite(x)) {
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+            }
+            if (Double.isFinite(y)) {
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+        }
+        if (minX > maxX) {
+            minX = maxX = 0;
+        }
+        if (minY > maxY) {
+            minY = maxY = 0;
+        }
+        // Вырожденный диапазон (одна точка или точки на одной прямой) расширяется до единичного
+        double spanX = maxX > minX ? maxX - minX : Math.max(1, Math.abs(minX));
+        double spanY = maxY > minY ? maxY - minY : Math.max(1, Math.abs(minY));
+        gridMinX = minX - spanX / 2;
+        gridMinY = minY - spanY / 2;
+
+        int cells = (int) Math.min(MAX_CELLS, Math.max(1L, 2L * size / POINTS_PER_CELL));
+        columns = Math.max(1, (int) Math.sqrt(cells));
+        rows = Math.max(1, cells / columns);
+        cellWidth = 2 * spanX / columns;
+        cellHeight = 2 * spanY / rows;
+
+        heads = new int[columns * rows];
+        Arrays.fill(heads, -1);
+        if (next.length < size) {
+            next = new int[Math.max(size, next.length + (next.length >> 1))];
+        }
+        for (int i = 0; i < size; i++) {
+            insert(i, series.getX(i), series.getY(i));
+        }
+        indexed = size;
+    }
+
+    private void insert(int i, double x, double y) {
+        int cell = row(y) * columns + column(x);
+        next[i] = heads[cell];
+        heads[cell] = i;
+    }
+
+    // Номер столбца и строки ячейки (координаты за границами сетки - в крайние ячейки,
+    // NaN - в первую)
+    private int column(double x) {
+        int c = (int) ((x - gridMinX) / cellWidth);
+        return Math.max(0, Math.min(columns - 1, c));
+    }
+
+    private int row(double y) {
+        int r = (int) ((y - gridMinY) / cellHeight);
+        return Math.max(0, Math.min(rows - 1, r));
+    }
+}
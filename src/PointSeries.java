@@ -0,0 +1,402 @@
+import java.util.Arrays;
+
+// Ряд точек графика, хранящийся по столбцам: координаты X и Y лежат
+// в двух примитивных массивах, поэтому обход ряда не создаёт объектов.
+// Кроме double, ряд может хранить координаты компактно (Storage): как float (X -
+// от начала отсчёта своего блока по BLOCK_SIZE точек) или как 16-битные значения
+// внутри блоков, отсчитанные от минимума блока с шагом (максимум - минимум) / 65535.
+// Компактный ряд читается теми же getX/getY; точные значения там, где они нужны
+// (классы точек, нули, подсказки), берутся через getExactX/getExactY
+public class PointSeries {
+
+    // Способ хранения координат: 16, 8 и примерно 4 байта на точку
+    public enum Storage {
+        DOUBLE, FLOAT, QUANTIZED
+    }
+
+    // Точные значения компактного ряда (например, отображённый в память файл).
+    // Методы могут вызываться одновременно из нескольких потоков
+    public interface ExactValues {
+        // Число точек, для которых известны точные значения
+        int size();
+
+        double getX(int i);
+
+        double getY(int i);
+    }
+
+    // Начальная ёмкость пустого ряда
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // Блок квантованного ряда: шаг значений в нём - 1/65535 разброса значений
+    // 256 соседних точек, на экране это доли пикселя даже при сильном увеличении
+    public static final int BLOCK_SIZE = 256;
+    private static final int BLOCK_SHIFT = 8;
+    private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+    // Наибольшее 16-битное значение без знака
+    private static final int QUANTUM_MAX = 0xFFFF;
+
+    private final Storage storage;
+    private int capacity;
+
+    // DOUBLE
+    private double[] xs;
+    private double[] ys;
+
+    // FLOAT: X хранится от начала отсчёта своего блока (первого конечного X блока) -
+    // в абсолютных float сливаются соседние метки времени и номера больше 2^24
+    private float[] xf;
+    private float[] yf;
+    private double[] xBase;
+    // Последний блок, начало отсчёта которого выбрано (ряд заполняется по порядку)
+    private int xBaseBlock = -1;
+
+    // QUANTIZED: значения точек, начало отсчёта и шаг каждого блока по осям;
+    // блоки с бесконечностями или NaN хранятся без квантования (rawX, rawY)
+    private short[] xq;
+    private short[] yq;
+    private double[] xOrigin;
+    private double[] xStep;
+    private double[] yOrigin;
+    private double[] yStep;
+    private double[][] rawX;
+    private double[][] rawY;
+    // Число квантованных блоков; следующий, неполный блок хранится точно в tailX, tailY
+    private int sealedBlocks;
+    private double[] tailX;
+    private double[] tailY;
+
+    private ExactValues exactValues;
+
+    private int size;
+
+    public PointSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PointSeries(int capacity) {
+        this(capacity, Storage.DOUBLE);
+    }
+
+    public PointSeries(int capacity, Storage storage) {
+        this.storage = storage;
+        this.capacity = capacity;
+        switch (storage) {
+            case DOUBLE:
+                xs = new double[capacity];
+                ys = new double[capacity];
+                break;
+            case FLOAT:
+                xf = new float[capacity];
+                yf = new float[capacity];
+                xBase = new double[blockCount(capacity)];
+                break;
+            case QUANTIZED:
+                int blocks = blockCount(capacity);
+                xq = new short[capacity];
+                yq = new short[capacity];
+                xOrigin = new double[blocks];
+                xStep = new double[blocks];
+                yOrigin = new double[blocks];
+                yStep = new double[blocks];
+                rawX = new double[blocks][];
+                rawY = new double[blocks][];
+                tailX = new double[BLOCK_SIZE];
+                tailY = new double[BLOCK_SIZE];
+                break;
+        }
+    }
+
+    // Ряд поверх уже заполненных массивов (массивы не копируются)
+    public PointSeries(double[] xs, double[] ys, int size) {
+        if (xs.length < size || ys.length < size) {
+            throw new IllegalArgumentException("Размер ряда больше длины массивов");
+        }
+        storage = Storage.DOUBLE;
+        capacity = Math.min(xs.length, ys.length);
+        this.xs = xs;
+        this.ys = ys;
+        this.size = size;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Координаты i-й точки; индекс должен быть меньше size()
+    public double getX(int i) {
+        if (xs != null) return xs[i];
+        if (xf != null) return xBase[i >>> BLOCK_SHIFT] + xf[i];
+        return quantized(i, xq, xOrigin, xStep, rawX, tailX);
+    }
+
+    public double getY(int i) {
+        if (ys != null) return ys[i];
+        if (yf != null) return yf[i];
+        return quantized(i, yq, yOrigin, yStep, rawY, tailY);
+    }
+
+    private double quantized(int i, short[] values, double[] origin, double[] step, double[][] raw,
+                             double[] tail) {
+        int block = i >>> BLOCK_SHIFT;
+        if (block >= sealedBlocks) return tail[i & BLOCK_MASK];
+        if (raw[block] != null) return raw[block][i & BLOCK_MASK];
+        return origin[block] + (values[i] & QUANTUM_MAX) * step[block];
+    }
+
+    // Точные координаты i-й точки: из источника точных значений, если он задан и
+    // знает эту точку, иначе - хранимые
+    public double getExactX(int i) {
+        ExactValues exact = exactValues;
+        return exact != null && i < exact.size() ? exact.getX(i) : getX(i);
+    }
+
+    public double getExactY(int i) {
+        ExactValues exact = exactValues;
+        return exact != null && i < exact.size() ? exact.getY(i) : getY(i);
+    }
+
+    public void setExactValues(ExactValues exactValues) {
+        this.exactValues = exactValues;
+    }
+
+    // Добавить точку в конец ряда
+    public void add(double x, double y) {
+        if (size == capacity) {
+            grow(size + 1);
+        }
+        if (xs != null) {
+            xs[size] = x;
+            ys[size] = y;
+        } else if (xf != null) {
+            putFloatX(size, x);
+            yf[size] = (float) y;
+        } else {
+            // Точка попадает в неполный блок; заполненный блок квантуется
+            tailX[size & BLOCK_MASK] = x;
+            tailY[size & BLOCK_MASK] = y;
+            if ((size & BLOCK_MASK) == BLOCK_MASK) {
+                seal(tailX, tailY, 0);
+            }
+        }
+        size++;
+    }
+
+    // Добавить len точек из массивов, начиная с позиции off
+    public void addAll(double[] xs, double[] ys, int off, int len) {
+        ensureCapacity(size + len);
+        if (this.xs != null) {
+            System.arraycopy(xs, off, this.xs, size, len);
+            System.arraycopy(ys, off, this.ys, size, len);
+            size += len;
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            add(xs[off + i], ys[off + i]);
+        }
+    }
+
+    public void addAll(PointSeries other) {
+        if (other.xs != null) {
+            addAll(other.xs, other.ys, 0, other.size);
+            return;
+        }
+        ensureCapacity(size + other.size);
+        for (int i = 0; i < other.size; i++) {
+            add(other.getX(i), other.getY(i));
+        }
+    }
+
+    // Записать len точек из массивов в ёмкость ряда с точки at, не меняя размер
+    // ряда: так загрузчик заполняет ряд, а владелец ряда открывает точки через
+    // setSize. Квантованный ряд заполняется по порядку целыми блоками (at - начало
+    // первого незаполненного блока); неполным может быть только последний блок записи
+    public void write(int at, double[] xs, double[] ys, int off, int len) {
+        if (at < 0 || len < 0 || at + len > capacity) {
+            throw new IllegalArgumentException("Точки за пределами ёмкости ряда: " + at + ", " + len);
+        }
+        switch (storage) {
+            case DOUBLE:
+                System.arraycopy(xs, off, this.xs, at, len);
+                System.arraycopy(ys, off, this.ys, at, len);
+                break;
+            case FLOAT:
+                for (int i = 0; i < len; i++) {
+                    putFloatX(at + i, xs[off + i]);
+                    yf[at + i] = (float) ys[off + i];
+                }
+                break;
+            case QUANTIZED:
+                if (at != sealedBlocks << BLOCK_SHIFT) {
+                    throw new IllegalArgumentException("Квантованный ряд заполняется по порядку блоками: " + at);
+                }
+                int i = 0;
+                for (; len - i >= BLOCK_SIZE; i += BLOCK_SIZE) {
+                    seal(xs, ys, off + i);
+                }
+                System.arraycopy(xs, off + i, tailX, 0, len - i);
+                System.arraycopy(ys, off + i, tailY, 0, len - i);
+                break;
+        }
+    }
+
+    // Записать X точки i ряда float от начала отсчёта её блока. Округление вниз
+    // сохраняет порядок: упорядоченный по X ряд остаётся упорядоченным и на стыках блоков
+    private void putFloatX(int i, double x) {
+        int block = i >>> BLOCK_SHIFT;
+        if (block > xBaseBlock && Double.isFinite(x)) {
+            xBase[block] = x;
+            xBaseBlock = block;
+        }
+        double offset = x - xBase[block];
+        float value = (float) offset;
+        if (value > offset) {
+            value = Math.nextDown(value);
+        }
+        xf[i] = value;
+    }
+
+    // Квантовать очередной блок из BLOCK_SIZE точек массивов, начиная с off
+    private void seal(double[] xs, double[] ys, int off) {
+        int block = sealedBlocks;
+        int start = block << BLOCK_SHIFT;
+        rawX[block] = quantize(xs, off, xq, start, block, xOrigin, xStep);
+        rawY[block] = quantize(ys, off, yq, start, block, yOrigin, yStep);
+        sealedBlocks = block + 1;
+    }
+
+    // Квантовать значения блока; если это невозможно, вернуть копию значений
+    private static double[] quantize(double[] source, int off, short[] values, int start, int block,
+                                     double[] origin, double[] step) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            min = Math.min(min, source[off + i]);
+            max = Math.max(max, source[off + i]);
+        }
+        double blockStep = (max - min) / QUANTUM_MAX;
+        // Бесконечности, NaN и разброс, переполняющий double, не квантуются
+        if (!Double.isFinite(blockStep)) {
+            return Arrays.copyOfRange(source, off, off + BLOCK_SIZE);
+        }
+        origin[block] = min;
+        step[block] = blockStep;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            values[start + i] = (short) (blockStep > 0 ? Math.round((source[off + i] - min) / blockStep) : 0);
+        }
+        return null;
+    }
+
+    // Индекс первой точки с X >= x (ряд должен быть упорядочен по X)
+    public int lowerBoundX(double x) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getX(middle) < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Индекс первой точки с X > x (ряд должен быть упорядочен по X)
+    public int upperBoundX(double x) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getX(middle) <= x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Сделать видимыми первые size элементов массивов ряда - например, точки,
+    // уже записанные туда загрузчиком. Размер не может превышать ёмкость
+    public void setSize(int size) {
+        if (size < 0 || size > capacity) {
+            throw new IllegalArgumentException("Недопустимый размер ряда: " + size);
+        }
+        this.size = size;
+    }
+
+    public void clear() {
+        size = 0;
+        sealedBlocks = 0;
+        xBaseBlock = -1;
+    }
+
+    // Объём памяти, занятой массивами ряда (по ёмкости, а не по числу точек)
+    public long getMemoryBytes() {
+        switch (storage) {
+            case FLOAT:
+                return 2L * capacity * Float.BYTES + (long) xBase.length * Double.BYTES;
+            case QUANTIZED:
+                long rawBlocks = 2;
+                for (int block = 0; block < sealedBlocks; block++) {
+                    if (rawX[block] != null) rawBlocks++;
+                    if (rawY[block] != null) rawBlocks++;
+                }
+                return 2L * capacity * Short.BYTES + 4L * xOrigin.length * Double.BYTES
+                        + rawBlocks * BLOCK_SIZE * Double.BYTES;
+            default:
+                return 2L * capacity * Double.BYTES;
+        }
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.capacity) {
+            grow(capacity);
+        }
+    }
+
+    // Увеличение ёмкости в полтора раза, но не меньше требуемой
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, this.capacity + (this.capacity >> 1) + 1);
+        switch (storage) {
+            case DOUBLE:
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+                break;
+            case FLOAT:
+                xf = Arrays.copyOf(xf, capacity);
+                yf = Arrays.copyOf(yf, capacity);
+                xBase = Arrays.copyOf(xBase, blockCount(capacity));
+                break;
+            case QUANTIZED:
+                xq = Arrays.copyOf(xq, capacity);
+                yq = Arrays.copyOf(yq, capacity);
+                growBlocks(blockCount(capacity));
+                break;
+        }
+        this.capacity = capacity;
+    }
+
+    private void growBlocks(int blocks) {
+        xOrigin = Arrays.copyOf(xOrigin, blocks);
+        xStep = Arrays.copyOf(xStep, blocks);
+        yOrigin = Arrays.copyOf(yOrigin, blocks);
+        yStep = Arrays.copyOf(yStep, blocks);
+        rawX = Arrays.copyOf(rawX, blocks);
+        rawY = Arrays.copyOf(rawY, blocks);
+    }
+
+    private static int blockCount(int capacity) {
+        return (capacity + BLOCK_MASK) >>> BLOCK_SHIFT;
+    }
+}
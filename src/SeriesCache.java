@@ -0,0 +1,156 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Кэш рядов, загруженных из файлов рабочей области. Суммарный объём рядов в кэше
+// ограничен бюджетом памяти: при его превышении вытесняются ряды, к которым дольше
+// всего не обращались. Вытесненный ряд при следующем запросе снова читается с диска.
+// Файлы загружаются в нескольких потоках одновременно; запрос файла, который уже
+// загружается, получает ту же загрузку. Ряд, вытесненный из кэша, но ещё показанный
+// на графике, остаётся в памяти, пока его не перестанут показывать
+public class SeriesCache {
+
+    // Бюджет по умолчанию - половина наибольшего размера кучи
+    public static final long DEFAULT_BUDGET_BYTES = Runtime.getRuntime().maxMemory() / 2;
+
+    // Число потоков загрузки: чтение с диска выигрывает от нескольких одновременных
+    // запросов, но не от десятков
+    private static final int LOADER_THREADS = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private final ExecutorService executor;
+
+    // Загруженные ряды в порядке обращения (первый - самый давний)
+    private final LinkedHashMap<File, PointSeries> series = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Загрузки, которые ещё не завершены
+    private final Map<File, CompletableFuture<PointSeries>> loading = new HashMap<>();
+
+    private long budgetBytes;
+    private long usedBytes;
+
+    // Способ хранения точек рядов, загружаемых с этого момента
+    private PointSeries.Storage storage = PointSeries.Storage.DOUBLE;
+
+    // Счётчики обращений: найдено в кэше, загружено с диска, вытеснено
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SeriesCache(long budgetBytes) {
+        setBudgetBytes(budgetBytes);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "series-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Ряд файла: сразу из кэша или после загрузки в потоке загрузки. Загрузка
+    // завершается исключением UncheckedIOException, если файл не удалось прочитать
+    public synchronized CompletableFuture<PointSeries> get(File file) {
+        PointSeries cached = series.get(file);
+        if (cached != null) {
+            hits++;
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<PointSeries> future = loading.get(file);
+        if (future != null) return future;
+        misses++;
+        PointSeries.Storage storage = this.storage;
+        future = CompletableFuture.supplyAsync(() -> load(file, storage), executor);
+        loading.put(file, future);
+        future.whenComplete((loaded, ex) -> loaded(file, loaded));
+        return future;
+    }
+
+    private static PointSeries load(File file, PointSeries.Storage storage) {
+        try {
+            return GraphicsFileLoader.load(file, storage).getSeries();
+        } catch (NoSuchFileException ex) {
+            throw new UncheckedIOException(file + ": файл не найден", ex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(file + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    // Загрузка завершена (loaded == null - с ошибкой)
+    private synchronized void loaded(File file, PointSeries loaded) {
+        // Файл могли убрать из кэша, пока он загружался - тогда ряд не сохраняется
+        if (loading.remove(file) == null || loaded == null) return;
+        series.put(file, loaded);
+        usedBytes += loaded.getMemoryBytes();
+        evict(loaded);
+    }
+
+    // Вытеснять самые давние ряды, пока кэш не уложится в бюджет (кроме ряда keep)
+    private void evict(PointSeries keep) {
+        Iterator<PointSeries> iterator = series.values().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            PointSeries eldest = iterator.next();
+            if (eldest == keep) continue;
+            iterator.remove();
+            usedBytes -= eldest.getMemoryBytes();
+            evictions++;
+        }
+    }
+
+    // Забыть файл (его ряд будет загружен заново при следующем запросе)
+    public synchronized void remove(File file) {
+        PointSeries removed = series.remove(file);
+        if (removed != null) {
+            usedBytes -= removed.getMemoryBytes();
+        }
+        loading.remove(file);
+    }
+
+    public synchronized boolean contains(File file) {
+        return series.containsKey(file);
+    }
+
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        if (budgetBytes <= 0) {
+            throw new IllegalArgumentException("Недопустимый бюджет памяти: " + budgetBytes);
+        }
+        this.budgetBytes = budgetBytes;
+        evict(null);
+    }
+
+    // Ряды, уже находящиеся в кэше, остаются в прежнем виде, пока их не вытеснят
+    public synchronized void setStorage(PointSeries.Storage storage) {
+        this.storage = storage;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getSeriesCount() {
+        return series.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Статистика ряда точек, собираемая за один параллельный проход при загрузке:
+// границы по X и Y, упорядоченность по X, упорядоченный по X список точек
+// пересечения графика с осью X и класс каждой точки по заданному правилу выделения.
+// При добавлении точек в конец ряда обрабатываются только новые точки (update).
+// Значения берутся точные (getExactX, getExactY), даже если ряд хранит их компактно
+public class SeriesStatistics {
+
+    // Диапазон, который обрабатывается одной задачей без дальнейшего деления
+    private static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+
+    private final PointSeries series;
+    private final PointClassifier classifier;
+
+    // Число уже обработанных точек ряда
+    private int processed;
+
+    private double minX;
+    private double maxX;
+    private double minY;
+    private double maxY;
+    private boolean xSorted = true;
+
+    // Координаты X пересечений с осью, по возрастанию
+    private double[] zeroCrossings = new double[16];
+    private int zeroCrossingCount;
+
+    // Класс каждой точки по правилу classifier
+    private byte[] classes = new byte[0];
+
+    public SeriesStatistics(PointSeries series, PointClassifier classifier) {
+        this.series = series;
+        this.classifier = classifier;
+        update();
+    }
+
+    // Обработать точки, добавленные в ряд после предыдущего вызова
+    public void update() {
+        int size = series.size();
+        if (size == processed) return;
+        if (classes.length < size) {
+            classes = Arrays.copyOf(classes, Math.max(size, classes.length + (classes.length >> 1)));
+        }
+        Part part = ForkJoinPool.commonPool().invoke(new RangeTask(processed, size));
+
+        if (processed == 0) {
+            minX = part.minX;
+            maxX = part.maxX;
+            minY = part.minY;
+            maxY = part.maxY;
+        } else {
+            minX = Math.min(minX, part.minX);
+            maxX = Math.max(maxX, part.maxX);
+            minY = Math.min(minY, part.minY);
+            maxY = Math.max(maxY, part.maxY);
+        }
+        xSorted &= part.xSorted;
+
+        if (zeroCrossings.length < zeroCrossingCount + part.crossingCount) {
+            zeroCrossings = Arrays.copyOf(zeroCrossings,
+                    Math.max(zeroCrossingCount + part.crossingCount, zeroCrossings.length * 2));
+        }
+        System.arraycopy(part.crossings, 0, zeroCrossings, zeroCrossingCount, part.crossingCount);
+        zeroCrossingCount += part.crossingCount;
+        // У неупорядоченного по X ряда пересечения идут вразнобой - упорядочить индекс
+        if (!xSorted) {
+            Arrays.parallelSort(zeroCrossings, 0, zeroCrossingCount);
+        }
+        processed = size;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public boolean isXSorted() {
+        return xSorted;
+    }
+
+    public int getZeroCrossingCount() {
+        return zeroCrossingCount;
+    }
+
+    // Координата X i-го по порядку пересечения с осью X
+    public double getZeroCrossing(int i) {
+        return zeroCrossings[i];
+    }
+
+    // Индекс первого пересечения с X >= x
+    public int lowerBoundZeroCrossing(double x) {
+        int low = 0;
+        int high = zeroCrossingCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (zeroCrossings[middle] < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Индекс первого пересечения с X > x
+    public int upperBoundZeroCrossing(double x) {
+        int low = 0;
+        int high = zeroCrossingCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (zeroCrossings[middle] <= x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public PointClassifier getClassifier() {
+        return classifier;
+    }
+
+    // Класс i-й точки
+    public byte getPointClass(int i) {
+        return classes[i];
+    }
+
+    // Итог обработки части ряда
+    private static class Part {
+        double minX = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        boolean xSorted = true;
+        double[] crossings = new double[8];
+        int crossingCount;
+
+        void addCrossing(double x) {
+            if (crossingCount == crossings.length) {
+                crossings = Arrays.copyOf(crossings, crossingCount * 2);
+            }
+            crossings[crossingCount++] = x;
+        }
+
+        // Присоединить итог следующей по порядку части
+        Part merge(Part next) {
+            minX = Math.min(minX, next.minX);
+            maxX = Math.max(maxX, next.maxX);
+            minY = Math.min(minY, next.minY);
+            maxY = Math.max(maxY, next.maxY);
+            xSorted &= next.xSorted;
+            if (crossings.length < crossingCount + next.crossingCount) {
+                crossings = Arrays.copyOf(crossings, crossingCount + next.crossingCount);
+            }
+            System.arraycopy(next.crossings, 0, crossings, crossingCount, next.crossingCount);
+            crossingCount += next.crossingCount;
+            return this;
+        }
+    }
+
+    // Задача обработки точек [from, to): большие диапазоны делятся пополам
+    @SuppressWarnings("serial")
+    private class RangeTask extends RecursiveTask<Part> {
+        private final int from;
+        private final int to;
+
+        RangeTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        protected Part compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                return computeSequentially();
+            }
+            int middle = (from + to) >>> 1;
+            RangeTask left = new RangeTask(from, middle);
+            left.fork();
+            Part right = new RangeTask(middle, to).compute();
+            return left.join().merge(right);
+        }
+
+        private Part computeSequentially() {
+            Part part = new Part();
+            for (int i = from; i < to; i++) {
+                double x = series.getExactX(i);
+                double y = series.getExactY(i);
+                if (x < part.minX) {
+                    part.minX = x;
+                }
+                if (x > part.maxX) {
+                    part.maxX = x;
+                }
+                if (y < part.minY) {
+                    part.minY = y;
+                }
+                if (y > part.maxY) {
+                    part.maxY = y;
+                }
+                classes[i] = classifier.classify(x, y);
+                if (i > 0) {
+                    double previousX = series.getExactX(i - 1);
+                    double previousY = series.getExactY(i - 1);
+                    if (x < previousX) {
+                        part.xSorted = false;
+                    }
+                    if (Math.signum(previousY) != Math.signum(y)) {
+                        // Точка пересечения отрезка с осью X (линейная интерполяция)
+                        double modY1 = Math.abs(previousY);
+                        double modY2 = Math.abs(y);
+                        part.addCrossing((modY1 * x + modY2 * previousX) / (modY2 + modY1));
+                    }
+                }
+            }
+            return part;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Импорт точек из текстового файла: в каждой строке - поля, разделённые запятой,
+// точкой с запятой, табуляцией или пробелами, координаты берутся из выбранных
+// столбцов. Файл отображается в память и делится на порции по границам строк,
+// порции разбираются параллельно в пуле fork-join. Числа разбираются прямо из
+// байтов файла, без создания строк; только числа, которые нельзя точно получить
+// из целой мантиссы и степени десяти (от 16 значащих цифр, большие порядки, NaN,
+// Infinity), передаются Double.parseDouble. Строки, в выбранных столбцах которых
+// нет чисел (например, заголовок), пропускаются и подсчитываются
+public class TextPointFileImporter {
+
+    // Разделитель "пробелы": поля разделяются любым числом пробелов и табуляций
+    public static final char WHITESPACE = ' ';
+
+    // Столбец X "номер точки": X точки - её номер среди импортированных точек
+    public static final int POINT_NUMBER = -1;
+
+    // Наибольшая и наименьшая длина порции файла, разбираемой одной задачей (порция
+    // копируется из отображения в массив: разбор из массива заметно быстрее, чем
+    // побайтовое чтение отображённого буфера)
+    private static final long MAX_CHUNK_SIZE = 16L << 20;
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+    // Наибольшая длина строки: последняя строка порции может выходить за её конец
+    // не больше чем на столько байт
+    private static final int MAX_LINE_LENGTH = 1 << 20;
+
+    // Как часто порция сообщает о ходе разбора и проверяет отмену (в байтах)
+    private static final int PROGRESS_STEP = 4 << 20;
+
+    // Точно представимые в double степени десяти
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    // Наибольшая мантисса, точно представимая в double
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    // Наблюдатель за ходом импорта (методы вызываются из потоков пула)
+    public interface Monitor {
+        // Разобрано parsedBytes байт из totalBytes
+        void update(long parsedBytes, long totalBytes);
+
+        // Прервать ли импорт
+        boolean isCancelled();
+    }
+
+    private final char delimiter;
+    private final int xColumn;
+    private final int yColumn;
+
+    // Число строк, пропущенных при последнем импорте
+    private volatile long skippedLines;
+
+    // delimiter - разделитель полей (',', ';', '\t' или WHITESPACE); xColumn и yColumn -
+    // номера столбцов с координатами, начиная с 0 (xColumn может быть POINT_NUMBER)
+    public TextPointFileImporter(char delimiter, int xColumn, int yColumn) {
+        if (xColumn < POINT_NUMBER || yColumn < 0) {
+            throw new IllegalArgumentException("Недопустимые номера столбцов: " + xColumn + ", " + yColumn);
+        }
+        this.delimiter = delimiter;
+        this.xColumn = xColumn;
+        this.yColumn = yColumn;
+    }
+
+    public long getSkippedLines() {
+        return skippedLines;
+    }
+
+    public PointSeries importFile(File file) throws IOException {
+        return importFile(file, null);
+    }
+
+    // Прочитать все точки файла. При отмене через monitor бросает CancellationException
+    public PointSeries importFile(File file, Monitor monitor) throws IOException {
+        long startNanos = System.nanoTime();
+        GraphicsLoadEvent loadEvent = new GraphicsLoadEvent();
+        loadEvent.begin();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            // Порций в несколько раз больше, чем потоков, чтобы потоки не простаивали
+            // из-за неравных по времени разбора порций
+            long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE,
+                    size / (4L * ForkJoinPool.getCommonPoolParallelism()) + 1));
+            int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+            ChunkTask[] tasks = new ChunkTask[chunkCount];
+            AtomicLong parsedBytes = new AtomicLong();
+            for (int k = 0; k < chunkCount; k++) {
+                tasks[k] = new ChunkTask(channel, size, k * chunkSize, Math.min(size, (k + 1) * chunkSize),
+                        parsedBytes, monitor);
+            }
+            try {
+                ForkJoinTask.invokeAll(tasks);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+
+            // Порции соединяются в ряд в порядке следования в файле
+            long total = 0;
+            long skipped = 0;
+            for (ChunkTask task : tasks) {
+                total += task.count;
+                skipped += task.skipped;
+            }
+            if (total > GraphicsFileLoader.MAX_POINTS) {
+                throw new IOException("Слишком много точек в файле: " + total);
+            }
+            double[] xs = new double[(int) total];
+            double[] ys = new double[(int) total];
+            int offset = 0;
+            for (int k = 0; k < chunkCount; k++) {
+                ChunkTask task = tasks[k];
+                if (xColumn != POINT_NUMBER) {
+                    System.arraycopy(task.xs, 0, xs, offset, task.count);
+                } else {
+                    for (int i = 0; i < task.count; i++) {
+                        xs[offset + i] = offset + i;
+                    }
+                }
+                System.arraycopy(task.ys, 0, ys, offset, task.count);
+                offset += task.count;
+                tasks[k] = null; // Массивы порции больше не нужны
+            }
+            skippedLines = skipped;
+
+            long nanos = System.nanoTime() - startNanos;
+            PlotMetrics.getInstance().fileLoaded(size, total, nanos);
+            loadEvent.end();
+            if (loadEvent.shouldCommit()) {
+                loadEvent.path = file.getPath();
+                loadEvent.bytes = size;
+                loadEvent.points = total;
+                loadEvent.megabytesPerSecond = PlotMetrics.megabytesPerSecond(size, nanos);
+                loadEvent.pointsPerSecond = PlotMetrics.perSecond(total, nanos);
+                loadEvent.commit();
+            }
+            return new PointSeries(xs, ys, (int) total);
+        }
+    }
+
+    // Разбор строк, начинающихся в порции [start, end) файла. Строка, начатая в
+    // предыдущей порции, принадлежит ей: порция начинается после первого перевода
+    // строки, а её последняя строка дочитывается за end
+    @SuppressWarnings("serial")
+    private class ChunkTask extends RecursiveAction {
+        private final FileChannel channel;
+        private final long fileSize;
+        private final long start;
+        private final long end;
+        private final AtomicLong parsedBytes;
+        private final Monitor monitor;
+
+        // Прочитанные точки и число пропущенных строк
+        double[] xs;
+        double[] ys;
+        int count;
+        long skipped;
+
+        // Удалось ли разобрать последнее поле (parseField)
+        private boolean parsed;
+
+        ChunkTask(FileChannel channel, long fileSize, long start, long end, AtomicLong parsedBytes,
+                  Monitor monitor) {
+            this.channel = channel;
+            this.fileSize = fileSize;
+            this.start = start;
+            this.end = end;
+            this.parsedBytes = parsedBytes;
+            this.monitor = monitor;
+        }
+
+        protected void compute() {
+            try {
+                parse();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private void parse() throws IOException {
+            // Отображается и байт перед порцией - по нему видно, начинается ли порция со строки
+            long mapStart = Math.max(0, start - 1);
+            long mapEnd = Math.min(fileSize, end + MAX_LINE_LENGTH);
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            int limit = buffer.limit();
+            byte[] data = new byte[limit];
+            buffer.get(0, data);
+            int chunkEnd = (int) (end - mapStart);
+            int p = (int) (start - mapStart);
+            if (start > 0) {
+                // Пропустить окончание строки, начатой в предыдущей порции
+                p--;
+                while (p < limit && data[p] != '\n') {
+                    p++;
+                }
+                p++;
+            }
+
+            int capacity = (int) Math.min(GraphicsFileLoader.MAX_POINTS, (end - start) / 16 + 16);
+            xs = xColumn != POINT_NUMBER ? new double[capacity] : new double[0];
+            ys = new double[capacity];
+            int reported = p;
+            long reportedBytes = 0;
+            while (p < chunkEnd) {
+                int lineEnd = p;
+                while (lineEnd < limit && data[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                if (lineEnd == limit && mapEnd < fileSize) {
+                    throw new IOException("Строка длиннее " + MAX_LINE_LENGTH + " байт (смещение "
+                            + (mapStart + p) + ")");
+                }
+                parseLine(data, p, lineEnd);
+                p = lineEnd + 1;
+
+                if (p - reported >= PROGRESS_STEP) {
+                    report(p - reported);
+                    reportedBytes += p - reported;
+                    reported = p;
+                }
+            }
+            report(Math.max(0, end - start - reportedBytes));
+        }
+
+        private void report(long bytes) {
+            if (monitor == null) return;
+            if (monitor.isCancelled()) {
+                throw new CancellationException();
+            }
+            monitor.update(parsedBytes.addAndGet(bytes), fileSize);
+        }
+
+        // Разобрать строку [from, to) и добавить её точку
+        private void parseLine(byte[] data, int from, int to) {
+            if (to > from && data[to - 1] == '\r') {
+                to--;
+            }
+            double x = 0;
+            double y = 0;
+            boolean hasX = xColumn == POINT_NUMBER;
+            boolean hasY = false;
+            int column = 0;
+            int p = from;
+            while (p <= to && !(hasX && hasY)) {
+                int fieldStart;
+                int fieldEnd;
+                if (delimiter == WHITESPACE) {
+                    while (p < to && isBlank(data[p])) {
+                        p++;
+                    }
+                    if (p == to) break;
+                    fieldStart = p;
+                    while (p < to && !isBlank(data[p])) {
+                        p++;
+                    }
+                    fieldEnd = p;
+                } else {
+                    fieldStart = p;
+                    while (p < to && data[p] != delimiter) {
+                        p++;
+                    }
+                    fieldEnd = p;
+                    p++; // За разделитель
+                }
+                if (column == xColumn) {
+                    x = parseField(data, fieldStart, fieldEnd);
+                    if (!parsed) break;
+                    hasX = true;
+                }
+                if (column == yColumn) {
+                    y = parseField(data, fieldStart, fieldEnd);
+                    if (!parsed) break;
+                    hasY = true;
+                }
+                column++;
+            }
+            if (!(hasX && hasY)) {
+                // Пустые строки не считаются пропущенными
+                if (isNotBlank(data, from, to)) {
+                    skipped++;
+                }
+                return;
+            }
+            if (count == ys.length) {
+                int capacity = (int) Math.min(GraphicsFileLoader.MAX_POINTS, count + (count >> 1) + 16L);
+                if (xColumn != POINT_NUMBER) {
+                    xs = Arrays.copyOf(xs, capacity);
+                }
+                ys = Arrays.copyOf(ys, capacity);
+            }
+            if (xColumn != POINT_NUMBER) {
+                xs[count] = x;
+            }
+            ys[count] = y;
+            count++;
+        }
+
+        // Разобрать число в поле [from, to); при неудаче parsed = false
+        private double parseField(byte[] data, int from, int to) {
+            // Пробелы и кавычки вокруг числа допускаются
+            while (from < to && isBlank(data[from])) {
+                from++;
+            }
+            while (to > from && isBlank(data[to - 1])) {
+                to--;
+            }
+            if (to - from >= 2 && data[from] == '"' && data[to - 1] == '"') {
+                from++;
+                to--;
+            }
+
+            int p = from;
+            boolean negative = false;
+            if (p < to && (data[p] == '-' || data[p] == '+')) {
+                negative = data[p] == '-';
+                p++;
+            }
+            long mantissa = 0;
+            int digits = 0; // Значащие цифры мантиссы
+            int exponent = 0;
+            boolean anyDigits = false;
+            boolean exact = true; // Все значащие цифры поместились в мантиссу
+            boolean point = false;
+            for (; p < to; p++) {
+                byte b = data[p];
+                if (b >= '0' && b <= '9') {
+                    anyDigits = true;
+                    if (mantissa == 0 && b == '0') {
+                        // Ведущие нули не значащие
+                        if (point) exponent--;
+                    } else if (digits < 18) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        digits++;
+                        if (point) exponent--;
+                    } else {
+                        exact &= b == '0';
+                        if (!point) exponent++;
+                    }
+                } else if (b == '.' && !point) {
+                    point = true;
+                } else {
+                    break;
+                }
+            }
+            if (anyDigits && p < to && (data[p] == 'e' || data[p] == 'E')) {
+                p++;
+                boolean negativeExponent = false;
+                if (p < to && (data[p] == '-' || data[p] == '+')) {
+                    negativeExponent = data[p] == '-';
+                    p++;
+                }
+                int value = 0;
+                boolean exponentDigits = false;
+                for (; p < to && data[p] >= '0' && data[p] <= '9'; p++) {
+                    value = Math.min(100000, value * 10 + (data[p] - '0'));
+                    exponentDigits = true;
+                }
+                if (!exponentDigits) {
+                    anyDigits = false;
+                }
+                exponent += negativeExponent ? -value : value;
+            }
+
+            parsed = true;
+            if (anyDigits && p == to && exact) {
+                if (mantissa == 0) {
+                    return negative ? -0.0 : 0.0;
+                }
+                // Мантисса и степень десяти точны, поэтому произведение (частное)
+                // округляется один раз и совпадает с результатом Double.parseDouble
+                if (mantissa < MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+                    double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent]
+                            : mantissa / POWERS_OF_TEN[-exponent];
+                    return negative ? -value : value;
+                }
+            }
+            if (to == from) {
+                parsed = false;
+                return Double.NaN;
+            }
+            // Редкий случай - разбор через строку
+            try {
+                return Double.parseDouble(new String(data, from, to - from, StandardCharsets.ISO_8859_1));
+            } catch (NumberFormatException ex) {
+                parsed = false;
+                return Double.NaN;
+            }
+        }
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isNotBlank(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isBlank(data[i])) return true;
+        }
+        return false;
+    }
+}
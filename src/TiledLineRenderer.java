@@ -0,0 +1,299 @@
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Многопоточная отрисовка длинной ломаной, упорядоченной по X. Холст делится на
+// вертикальные полосы, каждая полоса рисуется в своё изображение в отдельной задаче
+// пула fork-join, после чего полосы переносятся на холст. Полоса получает только
+// отрезки, попадающие в неё (с запасом на толщину линии), и обрезается по своим
+// границам. Чтобы пунктир не сбивался на стыках, фаза пунктира каждой полосы
+// равна длине ломаной на экране от её начала до первой точки полосы. Длина ломаной
+// до начала видимой области берётся из сумм длин по блокам ряда (PathLengths).
+// Экранные координаты точек не хранятся целиком: каждая задача пересчитывает свои
+// точки порциями по BATCH_POINTS в собственный буфер, поэтому память не растёт с
+// числом видимых точек
+public class TiledLineRenderer {
+
+    // Наименьшая ширина полосы в пикселях устройства
+    private static final int MIN_STRIP_WIDTH = 32;
+
+    // Число точек в порции, пересчитываемой в экранные координаты за раз. Порции
+    // рисуются отдельными ломаными, соседние порции имеют общую точку
+    private static final int BATCH_POINTS = 1 << 16;
+
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // Длины ломаной ряда до первой видимой точки
+    private final PathLengths pathLengths;
+
+    // Выравнивание координат при построении линии (VALUE_STROKE_NORMALIZE): перед
+    // разбиением на штрихи координата c заменяется на floor(c + normalizeShift) + normalizeOffset.
+    // Длины отрезков для фазы пунктира считаются по выровненным координатам
+    private boolean normalize;
+    private double normalizeShift;
+    private double normalizeOffset;
+
+    // Изображения полос (используются повторно, пока не изменится размер)
+    private BufferedImage[] strips = new BufferedImage[0];
+
+    public TiledLineRenderer(PathLengths pathLengths) {
+        this.pathLengths = pathLengths;
+    }
+
+    // Нарисовать на холсте размером width x height ломаную через точки [from, to) ряда
+    // series, упорядоченного по X. dataToScreen переводит координаты данных в координаты
+    // холста; фаза пунктира отсчитывается от точки 0 ряда, как если бы рисовалась вся ломаная
+    public void draw(Graphics2D canvas, int width, int height, PointSeries series, int from, int to,
+                     AffineTransform dataToScreen, BasicStroke stroke, Color color) {
+        if (to - from < 2) return;
+        // Полосы рисуются в пикселях устройства: к преобразованию данных добавляется
+        // преобразование холста (масштаб экрана высокой плотности)
+        AffineTransform device = canvas.getTransform();
+        AffineTransform toDevice = new AffineTransform(device);
+        toDevice.concatenate(dataToScreen);
+        Rectangle bounds = device.createTransformedShape(new Rectangle(0, 0, width, height)).getBounds();
+        if (bounds.width <= 0 || bounds.height <= 0) return;
+        float lineScale = (float) Math.sqrt(Math.abs(device.getDeterminant()));
+        normalize = canvas.getRenderingHint(RenderingHints.KEY_STROKE_CONTROL)
+                != RenderingHints.VALUE_STROKE_PURE;
+        // С сглаживанием - к центру пикселя, без него - к ближайшей четверти пикселя
+        boolean antialias = canvas.getRenderingHint(RenderingHints.KEY_ANTIALIASING)
+                == RenderingHints.VALUE_ANTIALIAS_ON;
+        normalizeShift = antialias ? 0 : 0.25;
+        normalizeOffset = antialias ? 0.5 : 0.25;
+
+        int stripCount = Math.max(1, Math.min(pool.getParallelism() * 2, bounds.width / MIN_STRIP_WIDTH));
+        int stripWidth = (bounds.width + stripCount - 1) / stripCount;
+        if (strips.length != stripCount || strips[0].getWidth() != stripWidth
+                || strips[0].getHeight() != bounds.height) {
+            strips = new BufferedImage[stripCount];
+            for (int k = 0; k < stripCount; k++) {
+                strips[k] = new BufferedImage(stripWidth, bounds.height, BufferedImage.TYPE_INT_ARGB_PRE);
+            }
+        }
+        // Линия в пикселях устройства толще в lineScale раз
+        BasicStroke deviceStroke = scaleStroke(stroke, lineScale);
+        // Отрезки, начавшиеся до полосы, могут заходить в неё на толщину линии
+        double margin = deviceStroke.getLineWidth() + 2;
+
+        // Точки полосы: от последней точки левее полосы до первой точки правее неё.
+        // Экранный X не убывает вместе с X данных, если в него не входит Y и масштаб
+        // положителен; иначе каждая полоса получает все видимые точки
+        boolean monotone = toDevice.getShearX() == 0 && toDevice.getScaleX() > 0;
+        int[] firsts = new int[stripCount];
+        int[] lasts = new int[stripCount];
+        for (int k = 0; k < stripCount; k++) {
+            int left = bounds.x + k * stripWidth;
+            if (monotone) {
+                firsts[k] = Math.max(from, lowerBound(series, from, to, left - margin, toDevice) - 1);
+                lasts[k] = Math.min(to - 1, lowerBound(series, from, to, left + stripWidth + margin, toDevice));
+            } else {
+                firsts[k] = from;
+                lasts[k] = to - 1;
+            }
+        }
+        // Фаза пунктира полосы: длина ломаной до первой видимой точки (из сумм длин ряда)
+        // и длины участков между первыми точками предыдущих полос, которые считаются параллельно
+        double[] phases = new double[stripCount];
+        List<LengthTask> lengthTasks = new ArrayList<>(stripCount - 1);
+        for (int k = 0; k + 1 < stripCount; k++) {
+            lengthTasks.add(new LengthTask(series, firsts[k], firsts[k + 1], toDevice, phases, k + 1));
+        }
+        ForkJoinTask.invokeAll(lengthTasks);
+        phases[0] = pathLengths.lengthTo(series, firsts[0], toDevice);
+        for (int k = 1; k < stripCount; k++) {
+            phases[k] += phases[k - 1];
+        }
+
+        List<StripTask> tasks = new ArrayList<>(stripCount);
+        for (int k = 0; k < stripCount; k++) {
+            tasks.add(new StripTask(strips[k], bounds.x + k * stripWidth, bounds.y, series, firsts[k], lasts[k],
+                    toDevice, phases[k], deviceStroke, color, canvas.getRenderingHints()));
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        // Полосы переносятся в пикселях устройства
+        canvas.setTransform(new AffineTransform());
+        for (int k = 0; k < stripCount; k++) {
+            canvas.drawImage(strips[k], bounds.x + k * stripWidth, bounds.y, null);
+        }
+        canvas.setTransform(device);
+    }
+
+    private static BasicStroke scaleStroke(BasicStroke stroke, float scale) {
+        float[] dash = stroke.getDashArray();
+        if (dash != null) {
+            dash = dash.clone();
+            for (int i = 0; i < dash.length; i++) {
+                dash[i] *= scale;
+            }
+        }
+        return new BasicStroke(stroke.getLineWidth() * scale, stroke.getEndCap(), stroke.getLineJoin(),
+                stroke.getMiterLimit(), dash, stroke.getDashPhase() * scale);
+    }
+
+    // Индекс первой из точек [from, to) ряда с экранной координатой X >= x
+    // (экранный X зависит только от X данных и не убывает)
+    private static int lowerBound(PointSeries series, int from, int to, double x, AffineTransform transform) {
+        double m00 = transform.getScaleX();
+        double m02 = transform.getTranslateX();
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (series.getX(middle) * m00 + m02 < x) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Пересчёт точек [start, end] ряда в экранные координаты buffer (попарно x, y) тем же
+    // методом, что и при преобразовании всей ломаной, поэтому координаты совпадают с обычной отрисовкой
+    private static void transform(PointSeries series, int start, int end, AffineTransform transform,
+                                  double[] buffer) {
+        for (int i = start; i <= end; i++) {
+            buffer[2 * (i - start)] = series.getX(i);
+            buffer[2 * (i - start) + 1] = series.getY(i);
+        }
+        transform.transform(buffer, 0, buffer, 0, end - start + 1);
+    }
+
+    // Длина ломаной через count точек buffer
+    private double length(double[] buffer, int count) {
+        double length = 0;
+        for (int i = 1; i < count; i++) {
+            length += distance(buffer[2 * i - 2], buffer[2 * i - 1], buffer[2 * i], buffer[2 * i + 1]);
+        }
+        return length;
+    }
+
+    // Длина отрезка после выравнивания координат
+    private double distance(double x1, double y1, double x2, double y2) {
+        if (normalize) {
+            x1 = Math.floor(x1 + normalizeShift) + normalizeOffset;
+            y1 = Math.floor(y1 + normalizeShift) + normalizeOffset;
+            x2 = Math.floor(x2 + normalizeShift) + normalizeOffset;
+            y2 = Math.floor(y2 + normalizeShift) + normalizeOffset;
+        }
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // Длина ломаной на экране от точки first до точки last ряда (в lengths[index])
+    @SuppressWarnings("serial")
+    private class LengthTask extends RecursiveAction {
+        private final PointSeries series;
+        private final int first;
+        private final int last;
+        private final AffineTransform transform;
+        private final double[] lengths;
+        private final int index;
+
+        LengthTask(PointSeries series, int first, int last, AffineTransform transform, double[] lengths,
+                   int index) {
+            this.series = series;
+            this.first = first;
+            this.last = last;
+            this.transform = transform;
+            this.lengths = lengths;
+            this.index = index;
+        }
+
+        protected void compute() {
+            if (first >= last) return;
+            double[] buffer = new double[2 * Math.min(BATCH_POINTS, last - first + 1)];
+            double length = 0;
+            for (int start = first; start < last; ) {
+                int end = Math.min(last, start + BATCH_POINTS - 1);
+                transform(series, start, end, transform, buffer);
+                length += length(buffer, end - start + 1);
+                start = end;
+            }
+            lengths[index] = length;
+        }
+    }
+
+    // Отрисовка одной полосы: ломаная через точки [first, last] ряда, пунктир которой
+    // начинается с отступа phase
+    @SuppressWarnings("serial")
+    private class StripTask extends RecursiveAction {
+        private final BufferedImage image;
+        private final int left;
+        private final int top;
+        private final PointSeries series;
+        private final int first;
+        private final int last;
+        private final AffineTransform transform;
+        private final double phase;
+        private final BasicStroke stroke;
+        private final Color color;
+        private final RenderingHints hints;
+
+        StripTask(BufferedImage image, int left, int top, PointSeries series, int first, int last,
+                  AffineTransform transform, double phase, BasicStroke stroke, Color color, RenderingHints hints) {
+            this.image = image;
+            this.left = left;
+            this.top = top;
+            this.series = series;
+            this.first = first;
+            this.last = last;
+            this.transform = transform;
+            this.phase = phase;
+            this.stroke = stroke;
+            this.color = color;
+            this.hints = hints;
+        }
+
+        protected void compute() {
+            int width = image.getWidth();
+            Graphics2D strip = image.createGraphics();
+            strip.setComposite(AlphaComposite.Clear);
+            strip.fillRect(0, 0, width, image.getHeight());
+            strip.setComposite(AlphaComposite.SrcOver);
+            strip.setRenderingHints(hints);
+
+            if (first < last) {
+                strip.translate(-left, -top);
+                strip.clipRect(left, top, width, image.getHeight());
+                strip.setColor(color);
+                // Порции рисуются по очереди; фаза пунктира каждой порции продолжает предыдущую
+                double[] buffer = new double[2 * Math.min(BATCH_POINTS, last - first + 1)];
+                Path2D.Double line = new Path2D.Double(Path2D.WIND_NON_ZERO, buffer.length / 2);
+                double length = phase;
+                for (int start = first; start < last; ) {
+                    int end = Math.min(last, start + BATCH_POINTS - 1);
+                    int count = end - start + 1;
+                    transform(series, start, end, transform, buffer);
+                    line.reset();
+                    line.moveTo(buffer[0], buffer[1]);
+                    for (int i = 1; i < count; i++) {
+                        line.lineTo(buffer[2 * i], buffer[2 * i + 1]);
+                    }
+                    strip.setStroke(PathLengths.withPhase(stroke, length));
+                    strip.draw(line);
+                    if (end < last) {
+                        length += length(buffer, count);
+                    }
+                    start = end;
+                }
+            }
+            strip.dispose();
+        }
+    }
+
+}
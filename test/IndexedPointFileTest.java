@@ -0,0 +1,230 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Запись и чтение индексированного формата: каждая кодировка столбца, особые
+// значения, неполная последняя порция и чтение диапазона на границах порций
+class IndexedPointFileTest {
+
+    // Порции по 100 точек, последняя из 250 точек - неполная
+    private static final int CHUNK_POINTS = 100;
+    private static final int POINTS = 250;
+
+    private static final double[] SPECIAL = {
+            Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -0.0
+    };
+    // Номера точек для особых значений: по одному в первых порциях, два - в последней
+    private static final int[] SPECIAL_AT = {13, 120, 215, 240};
+
+    @TempDir
+    File directory;
+
+    @Test
+    void decimalColumnsRoundTripExactly() throws IOException {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = i;
+            // Разбросанные значения, которые записываются только с MAX_DECIMAL_SCALE знаками
+            // (у линейной последовательности вторые разности двоичных представлений короче)
+            ys[i] = (i * i * 7919L % 1000003L - 500000L) / 1e9;
+        }
+        File file = write(xs, ys, false);
+        assertEncodings(file, IndexedPointFile.ENCODING_DECIMAL, 0,
+                IndexedPointFile.ENCODING_DECIMAL, IndexedPointFile.MAX_DECIMAL_SCALE);
+        assertRoundTrip(file, xs, ys);
+    }
+
+    @Test
+    void doubleDeltaColumnsKeepSpecialValues() throws IOException {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            // Шаг сетки X не записывается конечной десятичной дробью
+            xs[i] = 1000 + i / 3.0;
+            ys[i] = 5 + i / 7.0;
+        }
+        for (int k = 0; k < SPECIAL.length; k++) {
+            ys[SPECIAL_AT[k]] = SPECIAL[k];
+        }
+        File file = write(xs, ys, false);
+        assertEncodings(file, IndexedPointFile.ENCODING_DOUBLE_DELTA, 0,
+                IndexedPointFile.ENCODING_DOUBLE_DELTA, 0);
+        assertRoundTrip(file, xs, ys);
+    }
+
+    @Test
+    void doubleColumnsKeepSpecialValues() throws IOException {
+        Random random = new Random(1);
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = Double.longBitsToDouble(random.nextLong() & 0x7FEFFFFFFFFFFFFFL);
+            ys[i] = Double.longBitsToDouble(random.nextLong() & 0xFFEFFFFFFFFFFFFFL);
+        }
+        for (int k = 0; k < SPECIAL.length; k++) {
+            xs[SPECIAL_AT[k]] = SPECIAL[k];
+            ys[SPECIAL_AT[SPECIAL.length - 1 - k]] = SPECIAL[k];
+        }
+        // NaN с непустой мантиссой тоже сохраняется побитово
+        ys[201] = Double.longBitsToDouble(0x7FF0000000012345L);
+        File file = write(xs, ys, false);
+        assertEncodings(file, IndexedPointFile.ENCODING_DOUBLE, 0, IndexedPointFile.ENCODING_DOUBLE, 0);
+        assertRoundTrip(file, xs, ys);
+    }
+
+    @Test
+    void floatColumnsRoundToFloat() throws IOException {
+        Random random = new Random(2);
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = random.nextGaussian() * 1e6;
+            ys[i] = random.nextGaussian();
+        }
+        for (int k = 0; k < SPECIAL.length; k++) {
+            ys[SPECIAL_AT[k]] = SPECIAL[k];
+        }
+        File file = write(xs, ys, true);
+        assertEncodings(file, IndexedPointFile.ENCODING_FLOAT, 0, IndexedPointFile.ENCODING_FLOAT, 0);
+        double[] expectedXs = new double[POINTS];
+        double[] expectedYs = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            expectedXs[i] = (float) xs[i];
+            expectedYs[i] = (float) ys[i];
+        }
+        assertRoundTrip(file, expectedXs, expectedYs);
+    }
+
+    @Test
+    void negativeZeroIsNotWrittenAsDecimal() throws IOException {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = i;
+            ys[i] = i % 2 == 0 ? 0.5 : -0.0;
+        }
+        File file = write(xs, ys, false);
+        assertRoundTrip(file, xs, ys);
+    }
+
+    @Test
+    void headerDescribesPoints() throws IOException {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = i;
+            ys[i] = i % 10 - 3;
+        }
+        try (FileChannel channel = open(write(xs, ys, false))) {
+            IndexedPointFile file = new IndexedPointFile(channel);
+            assertEquals(POINTS, file.getPointCount());
+            assertEquals(3, file.getChunkCount());
+            assertEquals(CHUNK_POINTS, file.getMaxChunkPoints());
+            assertEquals(POINTS % CHUNK_POINTS, file.getChunkPoints(2));
+            assertTrue(file.isXSorted());
+            assertEquals(0, file.getMinX());
+            assertEquals(POINTS - 1, file.getMaxX());
+            assertEquals(-3, file.getMinY());
+            assertEquals(6, file.getMaxY());
+            assertEquals(CHUNK_POINTS, file.getChunkMinX(1));
+            assertEquals(2 * CHUNK_POINTS - 1, file.getChunkMaxX(1));
+        }
+        xs[POINTS - 1] = -1;
+        try (FileChannel channel = open(write(xs, ys, false))) {
+            assertFalse(new IndexedPointFile(channel).isXSorted());
+        }
+    }
+
+    @Test
+    void readRangeTakesChunksTouchingTheRange() throws IOException {
+        double[] xs = new double[POINTS];
+        double[] ys = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            xs[i] = i;
+            ys[i] = -i;
+        }
+        try (FileChannel channel = open(write(xs, ys, false))) {
+            IndexedPointFile file = new IndexedPointFile(channel);
+            // Граница порций 0 и 1 проходит между X = 99 и X = 100
+            assertRange(file, 99, 100, 0, 2 * CHUNK_POINTS);
+            assertRange(file, 99, 99, 0, CHUNK_POINTS);
+            assertRange(file, 100, 100, CHUNK_POINTS, 2 * CHUNK_POINTS);
+            assertRange(file, 99.25, 99.75, 0, 0);
+            // Неполная последняя порция
+            assertRange(file, 200, Double.POSITIVE_INFINITY, 2 * CHUNK_POINTS, POINTS);
+            assertRange(file, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 0, POINTS);
+            assertRange(file, POINTS, Double.POSITIVE_INFINITY, 0, 0);
+        }
+    }
+
+    // Прочитанные точки диапазона [fromX, toX] - точки [from, to) ряда
+    private static void assertRange(IndexedPointFile file, double fromX, double toX, int from, int to)
+            throws IOException {
+        PointSeries out = new PointSeries();
+        file.readRange(fromX, toX, out);
+        assertEquals(to - from, out.size(), "точек в диапазоне [" + fromX + ", " + toX + "]");
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(from + i, out.getX(i));
+            assertEquals(-(from + i), out.getY(i));
+        }
+    }
+
+    private File write(double[] xs, double[] ys, boolean allowFloat) throws IOException {
+        File file = new File(directory, "points.gpix");
+        new IndexedPointFileWriter(CHUNK_POINTS, allowFloat).write(new PointSeries(xs, ys, xs.length), file);
+        return file;
+    }
+
+    private static FileChannel open(File file) throws IOException {
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    // Все порции прочитаны побитово равными ожидаемым значениям
+    private static void assertRoundTrip(File file, double[] xs, double[] ys) throws IOException {
+        try (FileChannel channel = open(file)) {
+            IndexedPointFile indexed = new IndexedPointFile(channel);
+            double[] readXs = new double[POINTS];
+            double[] readYs = new double[POINTS];
+            int offset = 0;
+            for (int k = 0; k < indexed.getChunkCount(); k++) {
+                offset += indexed.readChunk(k, readXs, readYs, offset);
+            }
+            assertEquals(POINTS, offset);
+            for (int i = 0; i < POINTS; i++) {
+                assertEquals(Double.doubleToRawLongBits(xs[i]), Double.doubleToRawLongBits(readXs[i]),
+                        "x точки " + i);
+                assertEquals(Double.doubleToRawLongBits(ys[i]), Double.doubleToRawLongBits(readYs[i]),
+                        "y точки " + i);
+            }
+        }
+    }
+
+    // Кодировки и число знаков столбцов во всех порциях файла (из заголовков порций)
+    private static void assertEncodings(File file, byte xEncoding, int xScale, byte yEncoding, int yScale)
+            throws IOException {
+        try (FileChannel channel = open(file)) {
+            int chunkCount = new IndexedPointFile(channel).getChunkCount();
+            for (int k = 0; k < chunkCount; k++) {
+                ByteBuffer entry = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.BIG_ENDIAN);
+                channel.read(entry, IndexedPointFile.HEADER_SIZE + (long) k * IndexedPointFile.INDEX_ENTRY_SIZE);
+                ByteBuffer header = ByteBuffer.allocate(IndexedPointFile.CHUNK_HEADER_SIZE);
+                channel.read(header, entry.flip().getLong());
+                assertEquals(xEncoding, header.get(0), "кодировка X порции " + k);
+                assertEquals(xScale, header.get(1), "число знаков X порции " + k);
+                assertEquals(yEncoding, header.get(2), "кодировка Y порции " + k);
+                assertEquals(yScale, header.get(3), "число знаков Y порции " + k);
+            }
+        }
+    }
+}